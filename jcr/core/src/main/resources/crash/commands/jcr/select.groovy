@@ -4,6 +4,7 @@ import org.crsh.text.ui.UIBuilder;
 
 import javax.jcr.Node;
 import org.crsh.command.InvocationContext
+import org.crsh.io.Pipes
 import org.crsh.cmdline.annotations.Man
 import org.crsh.cmdline.annotations.Command
 import org.crsh.cmdline.annotations.Usage
@@ -106,7 +107,7 @@ select is a <Void,Node> command producing all the matched nodes.""")
       def index = 0;
       while (nodes.hasNext()) {
         def n = nodes.next();
-        if (limit != null && index >= limit) {
+        if (limit != null && index >= limit || Pipes.isDone(context)) {
           break;
         }
         formatNode(builder, n, 0, 1);
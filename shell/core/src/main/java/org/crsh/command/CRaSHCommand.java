@@ -40,21 +40,57 @@ import org.crsh.cmdline.matcher.OptionMatch;
 import org.crsh.cmdline.matcher.Resolver;
 import org.crsh.cmdline.spi.Completer;
 import org.crsh.cmdline.spi.Completion;
+import org.crsh.io.BatchPipe;
+import org.crsh.io.ConsumerStatus;
+import org.crsh.io.Pipes;
 import org.crsh.io.ProducerContext;
+import org.crsh.io.Selection;
 import org.crsh.util.TypeResolver;
 
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 public abstract class CRaSHCommand extends GroovyCommand implements ShellCommand {
 
+  /**
+   * The descriptors introspected per command class. A descriptor references its class, so the values are weakly
+   * referenced otherwise the map would keep the class loader of a reloaded command. A descriptor remains cached
+   * as long as an instance of its command is alive, after that the class is introspected again.
+   */
+  private static final Map<Class<?>, WeakReference<ClassDescriptor<?>>> descriptors = new WeakHashMap<Class<?>, WeakReference<ClassDescriptor<?>>>();
+
+  /**
+   * Returns the descriptor of a command class, the introspection is performed once per class.
+   *
+   * @param type the command class
+   * @return the command descriptor
+   * @throws IntrospectionException if the class cannot be introspected
+   */
+  private static ClassDescriptor<?> resolveDescriptor(Class<?> type) throws IntrospectionException {
+    ClassDescriptor<?> descriptor;
+    synchronized (descriptors) {
+      WeakReference<ClassDescriptor<?>> ref = descriptors.get(type);
+      descriptor = ref != null ? ref.get() : null;
+    }
+    if (descriptor == null) {
+      descriptor = new CommandFactory(type.getClassLoader()).create(type);
+      synchronized (descriptors) {
+        descriptors.put(type, new WeakReference<ClassDescriptor<?>>(descriptor));
+      }
+    }
+    return descriptor;
+  }
+
   /** . */
   private final Logger log = Logger.getLogger(getClass().getName());
 
@@ -71,7 +107,7 @@ public abstract class CRaSHCommand extends GroovyCommand implements ShellCommand
   private boolean help;
 
   protected CRaSHCommand() throws IntrospectionException {
-    this.descriptor = new CommandFactory(getClass().getClassLoader()).create(getClass());
+    this.descriptor = resolveDescriptor(getClass());
     this.help = false;
     this.unmatched = null;
   }
@@ -189,9 +225,20 @@ public abstract class CRaSHCommand extends GroovyCommand implements ShellCommand
   }
 
   public CommandInvoker<?, ?> resolveInvoker(String line) {
+    return resolveInvoker(match(line));
+  }
+
+  /**
+   * Match a command line against this command. The returned match does not retain this command and can be
+   * reused with any instance of the same class via the {@link #resolveInvoker(org.crsh.cmdline.matcher.CommandMatch)}
+   * method.
+   *
+   * @param line the command line
+   * @return the command match
+   */
+  public final CommandMatch<CRaSHCommand, ?, ?> match(String line) {
     Matcher analyzer = descriptor.matcher("main");
-    final CommandMatch<CRaSHCommand, ?, ?> match = analyzer.match(line);
-    return resolveInvoker(match);
+    return analyzer.match(line);
   }
 
   public final void execute(String s) throws ScriptException, IOException {
@@ -351,7 +398,7 @@ public abstract class CRaSHCommand extends GroovyCommand implements ShellCommand
             }
           };
         } else {
-          return new CommandInvoker<Object, Object>() {
+          return new BatchCommandInvoker<Object, Object>() {
 
             /** . */
             PipeCommand real;
@@ -413,6 +460,18 @@ public abstract class CRaSHCommand extends GroovyCommand implements ShellCommand
               real.provide(element);
             }
 
+            public void provideAll(Iterable<?> elements) throws IOException {
+              real.provideAll(elements);
+            }
+
+            public Map<String, Pattern> getSelection() {
+              return Pipes.getSelection(real);
+            }
+
+            public boolean isDone() {
+              return Pipes.isDone(real);
+            }
+
             public void flush() throws IOException {
               real.flush();
             }
@@ -500,4 +559,10 @@ public abstract class CRaSHCommand extends GroovyCommand implements ShellCommand
       return null;
     }
   }
+
+  /**
+   * A command invoker accepting batches of elements.
+   */
+  private static abstract class BatchCommandInvoker<C, P> implements CommandInvoker<C, P>, BatchPipe<C>, ConsumerStatus, Selection {
+  }
 }
@@ -19,15 +19,20 @@
 
 package org.crsh.command;
 
+import org.crsh.io.BatchPipe;
 import org.crsh.io.Consumer;
+import org.crsh.io.ConsumerStatus;
+import org.crsh.io.Pipes;
+import org.crsh.io.Selection;
 import org.crsh.text.Chunk;
 import org.crsh.io.ScreenContext;
 import org.crsh.text.RenderPrintWriter;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.regex.Pattern;
 
-class InnerInvocationContext<P> implements InvocationContext<P> {
+class InnerInvocationContext<P> implements InvocationContext<P>, BatchPipe<P>, ConsumerStatus, Selection {
 
   /** . */
   final InvocationContext<?> outter;
@@ -75,6 +80,14 @@ class InnerInvocationContext<P> implements InvocationContext<P> {
     return outter.readLine(msg, echo);
   }
 
+  public boolean isDone() {
+    return Pipes.isDone(consumer);
+  }
+
+  public Map<String, Pattern> getSelection() {
+    return Pipes.getSelection(consumer);
+  }
+
   public RenderPrintWriter getWriter() {
     if (writer == null) {
       writer = new RenderPrintWriter(new ScreenContext<Chunk>() {
@@ -107,6 +120,10 @@ class InnerInvocationContext<P> implements InvocationContext<P> {
     consumer.provide(element);
   }
 
+  public void provideAll(Iterable<? extends P> elements) throws IOException {
+    Pipes.provideAll(consumer, elements);
+  }
+
   public void flush() throws IOException {
     consumer.flush();
   }
@@ -24,6 +24,10 @@ import org.crsh.text.RenderPrintWriter;
 
 import java.io.IOException;
 
+/**
+ * The context of a command invocation. A context may also implement the optional {@link org.crsh.io.Selection} and
+ * {@link org.crsh.io.ConsumerStatus} interfaces, a command retrieves them with the {@link org.crsh.io.Pipes} methods.
+ */
 public interface InvocationContext<P> extends CommandContext, ProducerContext<P> {
 
   /**
@@ -19,8 +19,12 @@
 
 package org.crsh.command;
 
+import org.crsh.io.BatchPipe;
+import org.crsh.io.ConsumerStatus;
+import org.crsh.io.Pipes;
 import org.crsh.io.ScreenContext;
 import org.crsh.io.ProducerContext;
+import org.crsh.io.Selection;
 import org.crsh.shell.impl.command.CRaSHSession;
 import org.crsh.shell.impl.command.PipeLineFactory;
 import org.crsh.shell.impl.command.PipeLineParser;
@@ -29,8 +33,9 @@ import org.crsh.text.RenderPrintWriter;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.regex.Pattern;
 
-final class InvocationContextImpl<P> implements InvocationContext<P> {
+final class InvocationContextImpl<P> implements InvocationContext<P>, BatchPipe<P>, ConsumerStatus, Selection {
 
   /** . */
   private final ProducerContext<P> producerContext;
@@ -103,6 +108,14 @@ final class InvocationContextImpl<P> implements InvocationContext<P> {
     return producerContext.readLine(msg, echo);
   }
 
+  public boolean isDone() {
+    return Pipes.isDone(producerContext);
+  }
+
+  public Map<String, Pattern> getSelection() {
+    return Pipes.getSelection(producerContext);
+  }
+
   public int getWidth() {
     return producerContext.getWidth();
   }
@@ -115,6 +128,10 @@ final class InvocationContextImpl<P> implements InvocationContext<P> {
     producerContext.provide(element);
   }
 
+  public void provideAll(Iterable<? extends P> elements) throws IOException {
+    Pipes.provideAll(producerContext, elements);
+  }
+
   public void flush() throws IOException {
     producerContext.flush();
   }
@@ -68,6 +68,20 @@ public abstract class PipeCommand<C, P> {
   public void provide(C element) throws ScriptException, IOException {
   }
 
+  /**
+   * Provide a batch of elements, the default implementation provides the elements one by one with
+   * the {@link #provide(Object)} method.
+   *
+   * @param elements the provided elements
+   * @throws ScriptException any script exception
+   * @throws IOException any io exception
+   */
+  public void provideAll(Iterable<? extends C> elements) throws ScriptException, IOException {
+    for (C element : elements) {
+      provide(element);
+    }
+  }
+
   /**
    * Flush pipe.
    *
@@ -19,12 +19,15 @@
 
 package org.crsh.command;
 
+import org.crsh.io.BatchPipe;
+import org.crsh.io.ConsumerStatus;
 import org.crsh.io.Pipe;
+import org.crsh.io.Pipes;
 import org.crsh.io.ProducerContext;
 
 import java.io.IOException;
 
-class PipeCommandProxy<C, P> implements CommandInvoker<C, P> {
+class PipeCommandProxy<C, P> implements CommandInvoker<C, P>, BatchPipe<C>, ConsumerStatus {
 
   /** . */
   private final ProducerContext<P> innerContext;
@@ -68,10 +71,18 @@ class PipeCommandProxy<C, P> implements CommandInvoker<C, P> {
     delegate.open(context);
   }
 
+  public boolean isDone() {
+    return Pipes.isDone(delegate);
+  }
+
   public void provide(C element) throws ScriptException, IOException {
     delegate.provide(element);
   }
 
+  public void provideAll(Iterable<? extends C> elements) throws ScriptException, IOException {
+    Pipes.provideAll(delegate, elements);
+  }
+
   public void flush() throws ScriptException, IOException {
     delegate.flush();
     if (next != null && next instanceof PipeCommand) {
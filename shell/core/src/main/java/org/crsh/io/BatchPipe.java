@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.io;
+
+import java.io.IOException;
+
+/**
+ * A pipe that accepts a batch of elements in a single call, it avoids to pay the cost of the pipe
+ * chain for each element. The {@link Pipes#provideAll(Pipe, Iterable)} method provides a batch to any pipe
+ * and falls back on providing the elements one by one when the pipe does not implement this interface.
+ *
+ * @param <E> the element generic type
+ */
+public interface BatchPipe<E> extends Pipe<E> {
+
+  /**
+   * Provide a batch of elements, the pipe must not retain the iterable after the call.
+   *
+   * @param elements the provided elements
+   * @throws IOException any io exception
+   */
+  void provideAll(Iterable<? extends E> elements) throws IOException;
+
+}
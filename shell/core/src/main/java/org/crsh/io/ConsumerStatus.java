@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.io;
+
+/**
+ * A consumer that can tell when it does not need more elements. The {@link Pipes#isDone(Object)} method
+ * checks the status of any consumer and considers that a consumer that does not implement this interface
+ * always needs more elements.
+ */
+public interface ConsumerStatus {
+
+  /**
+   * Returns true when the consumer does not need more elements, the elements provided afterwards are
+   * likely discarded.
+   *
+   * @return true when no more elements are needed
+   */
+  boolean isDone();
+
+}
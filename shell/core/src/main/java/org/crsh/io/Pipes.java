@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.io;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+public class Pipes {
+
+  /**
+   * Provide a batch of elements to a pipe, natively when the pipe is a {@link BatchPipe} otherwise
+   * one element at a time.
+   *
+   * @param pipe the pipe
+   * @param elements the elements
+   * @param <E> the element generic type
+   * @throws IOException any io exception
+   */
+  public static <E> void provideAll(Pipe<E> pipe, Iterable<? extends E> elements) throws IOException {
+    if (pipe instanceof BatchPipe<?>) {
+      ((BatchPipe<E>)pipe).provideAll(elements);
+    } else {
+      for (E element : elements) {
+        pipe.provide(element);
+      }
+    }
+  }
+
+  /**
+   * Returns true when a consumer does not need more elements, a producer should check this status and
+   * stop producing as soon as it becomes true.
+   *
+   * @param consumer the consumer
+   * @return true when the consumer is a {@link ConsumerStatus} that does not need more elements
+   */
+  public static boolean isDone(Object consumer) {
+    return consumer instanceof ConsumerStatus && ((ConsumerStatus)consumer).isDone();
+  }
+
+  /**
+   * Returns the selection of a consumer, a producer of maps can skip the maps that the consumer would discard.
+   *
+   * @param consumer the consumer
+   * @return the field patterns when the consumer is a {@link Selection} that selects maps otherwise null
+   */
+  public static Map<String, Pattern> getSelection(Object consumer) {
+    return consumer instanceof Selection ? ((Selection)consumer).getSelection() : null;
+  }
+}
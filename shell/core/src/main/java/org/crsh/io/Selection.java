@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.io;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Describes the maps accepted by a consumer: a map is accepted when the value of each selected field is absent
+ * or its string value matches the field pattern. A producer of maps can retrieve the selection of its consumer
+ * and skip the maps that would be discarded before creating them. This interface is optional, a producer retrieves
+ * the selection of its consumer with {@link Pipes#getSelection(Object)}.
+ */
+public interface Selection {
+
+  /**
+   * Returns the patterns of the selected fields or null when the consumer accepts any map.
+   *
+   * @return the field patterns
+   */
+  Map<String, Pattern> getSelection();
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * An immutable prefix trie of the command names, it allows to list the names starting with a prefix
+ * without scanning all the names. Each node knows the range of the sorted names it covers, so the
+ * completions are a view of the names.
+ */
+class CommandIndex {
+
+  /** . */
+  private static final char[] NO_KEYS = new char[0];
+
+  /** . */
+  private static final Node[] NO_CHILDREN = new Node[0];
+
+  /** . */
+  static final CommandIndex EMPTY = new CommandIndex(Collections.<String>emptyList());
+
+  /** . */
+  private final Node root;
+
+  /** . */
+  private final List<String> names;
+
+  /**
+   * Build an index.
+   *
+   * @param names the sorted names
+   */
+  CommandIndex(SortedSet<String> names) {
+    this(new ArrayList<String>(names));
+  }
+
+  private CommandIndex(List<String> names) {
+    this.names = Collections.unmodifiableList(names);
+    this.root = build(this.names, 0, names.size(), 0);
+  }
+
+  /**
+   * Build the node of the names in the <code>[from, to[</code> range that share the same <code>depth</code> first chars.
+   */
+  private static Node build(List<String> names, int from, int to, int depth) {
+    int start = from;
+    if (from < to && names.get(from).length() == depth) {
+      from++;
+    }
+    int count = 0;
+    for (int i = from;i < to;count++) {
+      i = next(names, i, to, depth);
+    }
+    if (count == 0) {
+      return new Node(start, to, NO_KEYS, NO_CHILDREN);
+    }
+    char[] keys = new char[count];
+    Node[] children = new Node[count];
+    for (int i = from, j = 0;i < to;j++) {
+      int end = next(names, i, to, depth);
+      keys[j] = names.get(i).charAt(depth);
+      children[j] = build(names, i, end, depth + 1);
+      i = end;
+    }
+    return new Node(start, to, keys, children);
+  }
+
+  /**
+   * Returns the index of the first name after <code>from</code> that has a different char at <code>depth</code>.
+   */
+  private static int next(List<String> names, int from, int to, int depth) {
+    char c = names.get(from).charAt(depth);
+    int i = from + 1;
+    while (i < to && names.get(i).charAt(depth) == c) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Returns all the names in lexicographic order.
+   *
+   * @return the names
+   */
+  List<String> getNames() {
+    return names;
+  }
+
+  /**
+   * Returns the names starting with the specified prefix in lexicographic order.
+   *
+   * @param prefix the prefix
+   * @return the matching names
+   */
+  List<String> complete(String prefix) {
+    Node current = root;
+    for (int i = 0;i < prefix.length() && current != null;i++) {
+      current = current.get(prefix.charAt(i));
+    }
+    if (current == null) {
+      return Collections.emptyList();
+    } else {
+      return names.subList(current.from, current.to);
+    }
+  }
+
+  private static class Node {
+
+    /** The index of the first name starting with the node prefix. */
+    final int from;
+
+    /** The index after the last name starting with the node prefix. */
+    final int to;
+
+    /** The sorted keys. */
+    final char[] keys;
+
+    /** . */
+    final Node[] children;
+
+    private Node(int from, int to, char[] keys, Node[] children) {
+      this.from = from;
+      this.to = to;
+      this.keys = keys;
+      this.children = children;
+    }
+
+    Node get(char c) {
+      int index = Arrays.binarySearch(keys, c);
+      return index >= 0 ? children[index] : null;
+    }
+  }
+}
@@ -18,6 +18,7 @@
  */
 package org.crsh.plugin;
 
+import org.crsh.util.IO;
 import org.crsh.vfs.FS;
 import org.crsh.vfs.File;
 import org.crsh.vfs.Path;
@@ -60,6 +61,15 @@ public final class PluginContext {
   /** . */
   private volatile List<File> dirs;
 
+  /** The checksums of the dirs at the last refresh. */
+  private long[] checksums;
+
+  /** . */
+  private final Object refreshLock = new Object();
+
+  /** The command names index, rebuilt by the refresh when the directories change. */
+  private volatile CommandIndex commandIndex;
+
   /** . */
   private final Map<PropertyDescriptor<?>, Property<?>> properties;
 
@@ -135,6 +145,7 @@ public final class PluginContext {
     this.attributes = attributes;
     this.version = version;
     this.dirs = Collections.emptyList();
+    this.commandIndex = CommandIndex.EMPTY;
     this.cmdFS = cmdFS;
     this.properties = new HashMap<PropertyDescriptor<?>, Property<?>>();
     this.started = false;
@@ -265,7 +276,7 @@ public final class PluginContext {
               if (f != null) {
                 Resource sub = f.getResource();
                 if (sub != null) {
-                  buffer.write(sub.getContent());
+                  IO.copy(sub.open(), buffer);
                   buffer.write('\n');
                   timestamp = Math.max(timestamp, sub.getTimestamp());
                 }
@@ -275,12 +286,9 @@ public final class PluginContext {
           }
           break;
         case COMMAND:
-          // Find the resource first, we find for the first found
-          for (File path : dirs) {
-            File f = path.child(resourceId + ".groovy", false);
-            if (f != null) {
-              res = f.getResource();
-            }
+          File f = findCommand(resourceId);
+          if (f != null) {
+            res = f.getResource();
           }
           break;
         case CONFIG:
@@ -296,6 +304,69 @@ public final class PluginContext {
     return res;
   }
 
+  /**
+   * Returns the last modification timestamp of a resource without loading its content, this allows to
+   * check whether a resource obtained with {@link #loadResource(String, ResourceKind)} is still up to date
+   * without performing any content I/O.
+   *
+   * @param resourceId the resource id
+   * @param resourceKind the resource kind
+   * @return the resource timestamp or null if it cannot be found
+   */
+  public Long getResourceTimestamp(String resourceId, ResourceKind resourceKind) {
+    try {
+      switch (resourceKind) {
+        case LIFECYCLE:
+          if ("login".equals(resourceId) || "logout".equals(resourceId)) {
+            long timestamp = Long.MIN_VALUE;
+            for (File path : dirs) {
+              File f = path.child(resourceId + ".groovy", false);
+              if (f != null) {
+                timestamp = Math.max(timestamp, f.getLastModified());
+              }
+            }
+            return timestamp;
+          }
+          break;
+        case COMMAND:
+          File f = findCommand(resourceId);
+          if (f != null) {
+            return f.getLastModified();
+          }
+          break;
+        case CONFIG:
+          File file = confFS.get(Path.get("/" + resourceId));
+          if (file != null) {
+            long timestamp = file.getLastModified();
+            if (timestamp != -1) {
+              return timestamp;
+            }
+          }
+      }
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not obtain resource timestamp " + resourceId, e);
+    }
+    return null;
+  }
+
+  /**
+   * Find the command script file, when several directories provide the same command, the last one wins.
+   *
+   * @param resourceId the command id
+   * @return the file or null
+   * @throws IOException any io exception
+   */
+  private File findCommand(String resourceId) throws IOException {
+    File found = null;
+    for (File path : dirs) {
+      File f = path.child(resourceId + ".groovy", false);
+      if (f != null) {
+        found = f;
+      }
+    }
+    return found;
+  }
+
   /**
    * List the resources id for a specific resource kind.
    *
@@ -305,29 +376,45 @@ public final class PluginContext {
   public List<String> listResourceId(ResourceKind kind) {
     switch (kind) {
       case COMMAND:
-        SortedSet<String> all = new TreeSet<String>();
-        try {
-          for (File path : dirs) {
-            for (File file : path.children()) {
-              String name = file.getName();
-              Matcher matcher = p.matcher(name);
-              if (matcher.matches()) {
-                all.add(matcher.group(1));
-              }
-            }
-          }
-        }
-        catch (IOException e) {
-          e.printStackTrace();
-        }
-        all.remove("login");
-        all.remove("logout");
-        return new ArrayList<String>(all);
+        return commandIndex.getNames();
       default:
         return Collections.emptyList();
     }
   }
 
+  /**
+   * List the resources id starting with a prefix for a specific resource kind. The command ids are looked up
+   * in an index maintained by the {@link #refresh()} method so the file system is not accessed.
+   *
+   * @param kind the resource kind
+   * @param prefix the prefix
+   * @return the resource ids
+   */
+  public List<String> listResourceId(ResourceKind kind, String prefix) {
+    switch (kind) {
+      case COMMAND:
+        return commandIndex.complete(prefix);
+      default:
+        return Collections.emptyList();
+    }
+  }
+
+  private static CommandIndex index(List<File> dirs) throws IOException {
+    SortedSet<String> all = new TreeSet<String>();
+    for (File path : dirs) {
+      for (File file : path.children()) {
+        String name = file.getName();
+        Matcher matcher = p.matcher(name);
+        if (matcher.matches()) {
+          all.add(matcher.group(1));
+        }
+      }
+    }
+    all.remove("login");
+    all.remove("logout");
+    return new CommandIndex(all);
+  }
+
   /**
    * Returns the classloader associated with this context.
    *
@@ -367,21 +454,59 @@ public final class PluginContext {
   /**
    * Refresh the fs system view. This is normally triggered by the periodic job but it can be manually
    * invoked to trigger explicit refreshes.
+   *
+   * The refresh only checks the directory checksums: when the root directory did not change, only the
+   * directories that changed are replaced so the other directories keep their cached children.
    */
   public void refresh() {
-    try {
-      File commands = cmdFS.get(Path.get("/"));
-      List<File> newDirs = new ArrayList<File>();
-      newDirs.add(commands);
-      for (File path : commands.children()) {
-        if (path.isDir()) {
-          newDirs.add(path);
+    synchronized (refreshLock) {
+      try {
+        List<File> current = dirs;
+        if (current.size() > 0 && current.get(0).checksum() == checksums[0]) {
+          List<File> newDirs = null;
+          long[] newChecksums = null;
+          for (int i = 1;i < current.size();i++) {
+            File dir = current.get(i);
+            long checksum = dir.checksum();
+            if (checksum != checksums[i]) {
+              if (newDirs == null) {
+                newDirs = new ArrayList<File>(current);
+                newChecksums = checksums.clone();
+              }
+              log.log(Level.FINE, "Refreshing modified directory " + dir.getPath().getValue());
+              newDirs.set(i, cmdFS.get(dir.getPath()));
+              newChecksums[i] = checksum;
+            }
+          }
+          if (newDirs != null) {
+            commandIndex = index(newDirs);
+            checksums = newChecksums;
+            dirs = newDirs;
+          }
+        } else {
+          // Compute the checksum before listing so a concurrent modification is detected by the next refresh
+          File commands = cmdFS.get(Path.get("/"));
+          long rootChecksum = commands.checksum();
+          List<File> newDirs = new ArrayList<File>();
+          newDirs.add(commands);
+          for (File path : commands.children()) {
+            if (path.isDir()) {
+              newDirs.add(path);
+            }
+          }
+          long[] newChecksums = new long[newDirs.size()];
+          newChecksums[0] = rootChecksum;
+          for (int i = 1;i < newChecksums.length;i++) {
+            newChecksums[i] = newDirs.get(i).checksum();
+          }
+          commandIndex = index(newDirs);
+          checksums = newChecksums;
+          dirs = newDirs;
         }
       }
-      dirs = newDirs;
-    }
-    catch (IOException e) {
-      e.printStackTrace();
+      catch (IOException e) {
+        e.printStackTrace();
+      }
     }
   }
 
@@ -19,10 +19,11 @@
 
 package org.crsh.plugin;
 
+import org.crsh.util.Safe;
 import org.crsh.vfs.Resource;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -61,11 +62,15 @@ public abstract class PluginLifeCycle {
     // Load properties from configuration file
     Resource res = context.loadResource("crash.properties", ResourceKind.CONFIG);
     if (res != null) {
+      InputStream in = null;
       try {
-        config.load(new ByteArrayInputStream(res.getContent()));
+        in = res.open();
+        config.load(in);
         log.log(Level.FINE, "Loaded properties from " + config);
       } catch (IOException e) {
         log.log(Level.WARNING, "Could not configure from crash.properties", e);
+      } finally {
+        Safe.close(in);
       }
     } else {
       log.log(Level.FINE, "Could not find crash.properties file");
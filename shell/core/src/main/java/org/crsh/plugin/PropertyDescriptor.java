@@ -61,6 +61,18 @@ public abstract class PropertyDescriptor<T> {
   /** . */
   public static final PropertyDescriptor<Integer> VFS_REFRESH_PERIOD = PropertyDescriptor.create("vfs.refresh_period", (Integer)null, "The refresh rate period");
 
+  /** . */
+  public static final PropertyDescriptor<String> COMPILER_CACHE_DIR = PropertyDescriptor.create("compiler.cache_dir", (String)null, "The directory where compiled commands are cached across restarts");
+
+  /** . */
+  public static final PropertyDescriptor<Integer> COMPILER_WARMUP_THREADS = PropertyDescriptor.create("compiler.warmup_threads", (Integer)null, "The number of threads compiling the commands when the shell starts, no warm-up is performed when not set");
+
+  /** . */
+  public static final PropertyDescriptor<Integer> PIPELINE_QUEUE_SIZE = PropertyDescriptor.create("pipeline.queue_size", (Integer)null, "The capacity of the queues between the stages of a pipeline, when set each stage of a pipeline runs in its own thread");
+
+  /** . */
+  public static final PropertyDescriptor<Integer> RENDER_BATCH_SIZE = PropertyDescriptor.create("render.batch_size", (Integer)null, "The number of elements rendered at once, when set the output of a command is rendered incrementally instead of buffering all the elements");
+
   /** . */
   public final Class<T> type;
 
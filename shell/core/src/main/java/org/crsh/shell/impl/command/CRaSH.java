@@ -23,13 +23,18 @@ import groovy.lang.Script;
 import org.crsh.command.GroovyScriptCommand;
 import org.crsh.command.NoSuchCommandException;
 import org.crsh.command.ShellCommand;
+import org.crsh.command.SyntaxException;
 import org.crsh.plugin.PluginContext;
 import org.crsh.plugin.ResourceKind;
 
 import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class CRaSH {
 
+  /** The maximum number of cached pipelines. */
+  private static final int MAX_PIPELINES = 256;
 
   /** . */
   final ClassManager<ShellCommand> commands;
@@ -40,6 +45,14 @@ public class CRaSH {
   /** . */
   final PluginContext context;
 
+  /** The parsed pipelines by request, a pipeline is discarded when one of its command classes is reloaded. */
+  private final LinkedHashMap<String, CachedPipeLine> pipelines = new LinkedHashMap<String, CachedPipeLine>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedPipeLine> eldest) {
+      return size() > MAX_PIPELINES;
+    }
+  };
+
   /**
    * Create a new CRaSH.
    *
@@ -65,6 +78,24 @@ public class CRaSH {
     return context;
   }
 
+  /**
+   * Returns the number of command class loaders that are not yet unloaded.
+   *
+   * @return the number of command class loaders
+   */
+  public int getCommandLoaderCount() {
+    return commands.getLoaderCount();
+  }
+
+  /**
+   * Returns the number of classes defined by the command class loaders that are not yet unloaded.
+   *
+   * @return the number of command classes
+   */
+  public int getCommandClassCount() {
+    return commands.getClassCount();
+  }
+
   /**
    * Attempt to obtain a command instance. Null is returned when such command does not exist.
    *
@@ -76,4 +107,64 @@ public class CRaSH {
   public ShellCommand getCommand(String name) throws NoSuchCommandException, NullPointerException {
     return commands.getInstance(name);
   }
+
+  /**
+   * Returns the pipeline for a request, the cached pipeline is returned when its command classes were not
+   * reloaded, otherwise the request is parsed. Null is returned when the request does not contain any command.
+   *
+   * @param request the request
+   * @return the pipeline or null
+   * @throws SyntaxException if the request cannot be parsed
+   */
+  PipeLineFactory getPipeLine(String request) throws SyntaxException {
+    PipeLineFactory pipeline = getCachedPipeLine(request);
+    if (pipeline == null) {
+      pipeline = new PipeLineParser(request).parse();
+    }
+    return pipeline;
+  }
+
+  /**
+   * Cache the pipeline of a request, the pipeline is discarded as soon as one of its command classes is reloaded.
+   *
+   * @param request the request
+   * @param pipeline the pipeline
+   * @param versions the versions of the command classes the pipeline was resolved with
+   */
+  void putPipeLine(String request, PipeLineFactory pipeline, CommandVersions versions) {
+    synchronized (pipelines) {
+      pipelines.put(request, new CachedPipeLine(pipeline, versions));
+    }
+  }
+
+  private PipeLineFactory getCachedPipeLine(String request) {
+    synchronized (pipelines) {
+      CachedPipeLine cached = pipelines.get(request);
+      if (cached == null) {
+        return null;
+      } else if (cached.versions.isCurrent(commands)) {
+        return cached.pipeline;
+      } else {
+        pipelines.remove(request);
+        return null;
+      }
+    }
+  }
+
+  /**
+   * A cached pipeline with the versions of the command classes it was resolved with.
+   */
+  private static class CachedPipeLine {
+
+    /** . */
+    private final PipeLineFactory pipeline;
+
+    /** . */
+    private final CommandVersions versions;
+
+    private CachedPipeLine(PipeLineFactory pipeline, CommandVersions versions) {
+      this.pipeline = pipeline;
+      this.versions = versions;
+    }
+  }
 }
@@ -94,11 +94,12 @@ abstract class CRaSHProcess implements ShellProcess {
   public void cancel() {
     ClassLoader previous = crash.setCRaSHLoader();
     try {
+      // Set before the interruption as the process may complete as soon as it is interrupted
+      cancelled = true;
       Thread t = thread;
       if (t != null) {
         t.interrupt();
       }
-      cancelled = true;
     }
     finally {
       crash.setPreviousLoader(previous);
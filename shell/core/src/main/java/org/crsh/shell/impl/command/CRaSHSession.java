@@ -174,8 +174,7 @@ public class CRaSHSession extends HashMap<String, Object> implements Shell, Clos
       response = ShellResponse.close();
     } else {
       // Create pipeline from request
-      PipeLineParser parser = new PipeLineParser(request);
-      PipeLineFactory pipeline = parser.parse();
+      PipeLineFactory pipeline = crash.getPipeLine(request);
       if (pipeline != null) {
         // Create commands first
         return pipeline.create(this, request);
@@ -215,10 +214,8 @@ public class CRaSHSession extends HashMap<String, Object> implements Shell, Clos
       int pos = termPrefix.indexOf(' ');
       if (pos == -1) {
         Completion.Builder builder = Completion.builder(prefix);
-        for (String resourceId : crash.context.listResourceId(ResourceKind.COMMAND)) {
-          if (resourceId.startsWith(termPrefix)) {
-            builder.add(resourceId.substring(termPrefix.length()), true);
-          }
+        for (String resourceId : crash.context.listResourceId(ResourceKind.COMMAND, termPrefix)) {
+          builder.add(resourceId.substring(termPrefix.length()), true);
         }
         completion = new CommandCompletion(Delimiter.EMPTY, builder.build());
       } else {
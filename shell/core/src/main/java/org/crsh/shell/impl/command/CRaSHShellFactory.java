@@ -21,6 +21,7 @@ package org.crsh.shell.impl.command;
 
 import org.crsh.plugin.CRaSHPlugin;
 import org.crsh.plugin.PluginContext;
+import org.crsh.plugin.PropertyDescriptor;
 import org.crsh.shell.Shell;
 import org.crsh.shell.ShellFactory;
 import org.crsh.shell.impl.async.AsyncShell;
@@ -39,6 +40,12 @@ public class CRaSHShellFactory extends CRaSHPlugin<ShellFactory> implements Shel
   public void init() {
     PluginContext context = getContext();
     crash = new CRaSH(context);
+
+    //
+    Integer threads = context.getProperty(PropertyDescriptor.COMPILER_WARMUP_THREADS);
+    if (threads != null && threads > 0) {
+      crash.commands.warmUp(threads);
+    }
   }
 
   @Override
@@ -19,8 +19,6 @@
 
 package org.crsh.shell.impl.command;
 
-import groovy.lang.GroovyClassLoader;
-import groovy.lang.GroovyCodeSource;
 import groovy.lang.Script;
 import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.CompilerConfiguration;
@@ -28,19 +26,46 @@ import org.crsh.command.CommandInvoker;
 import org.crsh.command.GroovyScriptCommand;
 import org.crsh.command.NoSuchCommandException;
 import org.crsh.plugin.PluginContext;
+import org.crsh.plugin.PropertyDescriptor;
 import org.crsh.plugin.ResourceKind;
 import org.crsh.shell.ErrorType;
+import org.crsh.util.IO;
 import org.crsh.util.TimestampedObject;
 import org.crsh.vfs.Resource;
 
-import java.io.UnsupportedEncodingException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 class ClassManager<T> {
 
   /** . */
-  private final Map<String, TimestampedObject<Class<? extends T>>> classes = new ConcurrentHashMap<String, TimestampedObject<Class<? extends T>>>();
+  private static final Logger log = Logger.getLogger(ClassManager.class.getName());
+
+  /** . */
+  private final Map<String, LoadedClass<T>> classes = new ConcurrentHashMap<String, LoadedClass<T>>();
+
+  /** The scripts that failed to compile. */
+  private final Map<String, TimestampedObject<NoSuchCommandException>> failures = new ConcurrentHashMap<String, TimestampedObject<NoSuchCommandException>>();
+
+  /** The scripts being loaded, a script is loaded by a single thread at a time. */
+  private final ConcurrentMap<String, FutureTask<LoadedClass<T>>> loading = new ConcurrentHashMap<String, FutureTask<LoadedClass<T>>>();
 
   /** . */
   private final PluginContext context;
@@ -57,6 +82,21 @@ class ClassManager<T> {
   /** . */
   private final ResourceKind kind;
 
+  /** . */
+  private volatile CompiledScriptCache cache;
+
+  /** The current generation. */
+  private ScriptGeneration generation;
+
+  /** The generations that are not yet collected, including the released ones. */
+  private final List<WeakReference<ScriptGeneration>> generations = new LinkedList<WeakReference<ScriptGeneration>>();
+
+  /** . */
+  private final ReferenceQueue<ScriptGeneration> collected = new ReferenceQueue<ScriptGeneration>();
+
+  /** Incremented each time a class is loaded. */
+  private final AtomicInteger version = new AtomicInteger();
+
   ClassManager(PluginContext context, ResourceKind kind, Class<T> baseClass, Class<? extends Script> baseScriptClass) {
     CompilerConfiguration config = new CompilerConfiguration();
     config.setRecompileGroovySource(true);
@@ -75,64 +115,393 @@ class ClassManager<T> {
       throw new NullPointerException("No null argument allowed");
     }
 
-    TimestampedObject<Class<? extends T>> providerRef = classes.get(name);
+    LoadedClass<T> providerRef = classes.get(name);
 
-    //
-    Resource script = context.loadResource(name, kind);
+    // Probe the script timestamp only, the content is loaded when a compilation is needed
+    Long timestamp = context.getResourceTimestamp(name, kind);
 
     //
-    if (script != null) {
+    if (timestamp == null) {
+      failures.remove(name);
+    } else {
       if (providerRef != null) {
-        if (script.getTimestamp() != providerRef.getTimestamp()) {
+        if (timestamp != providerRef.getTimestamp()) {
           providerRef = null;
         }
       }
 
       //
       if (providerRef == null) {
+        providerRef = load(name, timestamp);
+      }
+    }
 
-        //
-        String source;
-        try {
-          source = new String(script.getContent(), "UTF-8");
-        }
-        catch (UnsupportedEncodingException e) {
-          throw new NoSuchCommandException(name, ErrorType.INTERNAL, "Could not compile command script " + name, e);
-        }
+    //
+    if (providerRef == null) {
+      return null;
+    }
 
-        //
-        Class<?> clazz;
-        try {
-          GroovyCodeSource gcs = new GroovyCodeSource(source, name, "/groovy/shell");
-          GroovyClassLoader gcl = new GroovyClassLoader(context.getLoader(), config);
-          clazz = gcl.parseClass(gcs, false);
-        }
-        catch (NoClassDefFoundError e) {
-          throw new NoSuchCommandException(name, ErrorType.INTERNAL, "Could not compile command script " + name, e);
+    //
+    return providerRef.getObject();
+  }
+
+  /**
+   * Load the class of a script, the concurrent loads of a script are serialized so the script is compiled
+   * once: a thread requesting a script already being loaded waits for its class instead of compiling it again
+   * and starting a new generation.
+   *
+   * @param name the script name
+   * @param timestamp the script timestamp
+   * @return the loaded class or null when the script does not exist anymore
+   * @throws NoSuchCommandException if the script cannot be loaded
+   */
+  private LoadedClass<T> load(final String name, final long timestamp) throws NoSuchCommandException {
+    FutureTask<LoadedClass<T>> task = new FutureTask<LoadedClass<T>>(new Callable<LoadedClass<T>>() {
+      public LoadedClass<T> call() throws NoSuchCommandException {
+        return doLoad(name, timestamp);
+      }
+    });
+    FutureTask<LoadedClass<T>> current = loading.putIfAbsent(name, task);
+    if (current == null) {
+      current = task;
+      try {
+        task.run();
+      }
+      finally {
+        loading.remove(name, task);
+      }
+    }
+    try {
+      return current.get();
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof NoSuchCommandException) {
+        throw (NoSuchCommandException)cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      } else if (cause instanceof Error) {
+        throw (Error)cause;
+      } else {
+        throw new UndeclaredThrowableException(cause);
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new NoSuchCommandException(name, ErrorType.INTERNAL, "Interrupted while loading command script " + name, e);
+    }
+  }
+
+  private LoadedClass<T> doLoad(String name, long timestamp) throws NoSuchCommandException {
+
+    // The class may have been loaded by another thread meanwhile
+    LoadedClass<T> loaded = classes.get(name);
+    if (loaded != null && loaded.getTimestamp() == timestamp) {
+      return loaded;
+    }
+
+    // A script that failed to compile is not compiled again until it is modified
+    TimestampedObject<NoSuchCommandException> failure = failures.get(name);
+    if (failure != null) {
+      if (failure.getTimestamp() == timestamp) {
+        throw failure.getObject();
+      }
+      failures.remove(name);
+    }
+
+    //
+    Resource script = context.loadResource(name, kind);
+    if (script == null) {
+      return null;
+    }
+
+    //
+    return load(name, script);
+  }
+
+  private LoadedClass<T> load(String name, Resource script) throws NoSuchCommandException {
+
+    //
+    String source;
+    try {
+      source = new String(IO.readAsBytes(script.open()), "UTF-8");
+    }
+    catch (IOException e) {
+      throw new NoSuchCommandException(name, ErrorType.INTERNAL, "Could not read command script " + name, e);
+    }
+
+    //
+    Class<?> clazz;
+    try {
+      clazz = define(compile(name, source));
+    }
+    catch (NoClassDefFoundError e) {
+      throw new NoSuchCommandException(name, ErrorType.INTERNAL, "Could not compile command script " + name, e);
+    }
+    catch (CompilationFailedException e) {
+      // Only compilation failures are cached, other failures may not happen again with the same script
+      NoSuchCommandException failure = new NoSuchCommandException(name, ErrorType.INTERNAL, "Could not compile command script " + name, e);
+      failures.put(name, new TimestampedObject<NoSuchCommandException>(script.getTimestamp(), failure));
+      throw failure;
+    }
+    catch (ClassNotFoundException e) {
+      throw new NoSuchCommandException(name, ErrorType.INTERNAL, "Could not load command script " + name, e);
+    }
+
+    //
+    if (baseClass.isAssignableFrom(clazz)) {
+      Class<? extends T> providerClass = clazz.asSubclass(baseClass);
+      LoadedClass<T> providerRef = new LoadedClass<T>(script.getTimestamp(), providerClass, version.incrementAndGet());
+      LoadedClass<T> previous = classes.put(name, providerRef);
+      acquire(providerClass);
+      if (previous != null) {
+        release(previous.getObject());
+      }
+      return providerRef;
+    } else {
+      throw new NoSuchCommandException(name, ErrorType.INTERNAL, "Parsed script " + clazz.getName() +
+        " does not implements " + CommandInvoker.class.getName());
+    }
+  }
+
+  /**
+   * Define a compiled script in the current generation, a new generation is started when the
+   * current generation already defines one of the script classes.
+   *
+   * @param script the compiled script
+   * @return the script main class
+   * @throws ClassNotFoundException if the main class cannot be loaded
+   */
+  private Class<?> define(CompiledScript script) throws ClassNotFoundException {
+    while (true) {
+      ScriptGeneration current = getGeneration();
+      Class<?> clazz = current.define(script);
+      if (clazz != null) {
+        return clazz;
+      }
+      synchronized (generations) {
+        if (generation == current) {
+          ScriptGeneration next = new ScriptGeneration(current.id + 1, context.getLoader(), config);
+          log.log(Level.FINE, "Starting " + next + " for redefining " + script.mainClassName);
+          generations.add(new WeakReference<ScriptGeneration>(next, collected));
+          generation = next;
+
+          // The generation can be released when it does not host any script
+          if (current.getScriptCount() == 0) {
+            dispose(current);
+          }
         }
-        catch (CompilationFailedException e) {
-          throw new NoSuchCommandException(name, ErrorType.INTERNAL, "Could not compile command script " + name, e);
+      }
+    }
+  }
+
+  private ScriptGeneration getGeneration() {
+    synchronized (generations) {
+      if (generation == null) {
+        generation = new ScriptGeneration(0, context.getLoader(), config);
+        generations.add(new WeakReference<ScriptGeneration>(generation, collected));
+      }
+      return generation;
+    }
+  }
+
+  private void acquire(Class<?> clazz) {
+    if (clazz.getClassLoader() instanceof ScriptGeneration) {
+      ((ScriptGeneration)clazz.getClassLoader()).acquire();
+    }
+  }
+
+  private void release(Class<?> clazz) {
+    if (clazz.getClassLoader() instanceof ScriptGeneration) {
+      ScriptGeneration owner = (ScriptGeneration)clazz.getClassLoader();
+      if (owner.release()) {
+        synchronized (generations) {
+          if (owner != generation) {
+            dispose(owner);
+          }
         }
+      }
+    }
+  }
+
+  /**
+   * Release a generation that does not host any current script anymore. The loader is not referenced by the
+   * manager anymore and is unloaded once the running processes do not reference its classes.
+   *
+   * @param released the released generation
+   */
+  private void dispose(ScriptGeneration released) {
+    log.log(Level.FINE, "Releasing " + released + " defining " + released.getClassCount() + " classes");
+    released.dispose();
+  }
+
+  /**
+   * Returns the version of the loaded classes, the version changes each time a class is loaded or reloaded.
+   *
+   * @return the version
+   */
+  int getVersion() {
+    return version.get();
+  }
+
+  /**
+   * Returns the version of the class currently loaded for a name, the version changes each time the class
+   * is reloaded. The script is not probed for modifications, <code>0</code> is returned when no class
+   * is loaded for the name.
+   *
+   * @param name the class name
+   * @return the version
+   */
+  int getVersion(String name) {
+    LoadedClass<T> loaded = classes.get(name);
+    return loaded != null ? loaded.version : 0;
+  }
 
-        //
-        if (baseClass.isAssignableFrom(clazz)) {
-          Class<? extends T> providerClass = clazz.asSubclass(baseClass);
-          providerRef = new TimestampedObject<Class<? extends T>>(script.getTimestamp(), providerClass);
-          classes.put(name, providerRef);
-        } else {
-          throw new NoSuchCommandException(name, ErrorType.INTERNAL, "Parsed script " + clazz.getName() +
-            " does not implements " + CommandInvoker.class.getName());
+  /**
+   * Returns the version of a class obtained for a name, <code>-1</code> is returned when the class is not
+   * the class currently loaded for the name anymore.
+   *
+   * @param name the class name
+   * @param clazz the class
+   * @return the version
+   */
+  int getVersion(String name, Class<?> clazz) {
+    LoadedClass<T> loaded = classes.get(name);
+    return loaded != null && loaded.getObject() == clazz ? loaded.version : -1;
+  }
+
+  /**
+   * Returns the number of generation class loaders that are not yet unloaded, it includes the current
+   * generation and the released generations still referenced by running processes.
+   *
+   * @return the number of live class loaders
+   */
+  int getLoaderCount() {
+    synchronized (generations) {
+      purge();
+      return generations.size();
+    }
+  }
+
+  /**
+   * Returns the number of classes defined by the generation class loaders that are not yet unloaded.
+   *
+   * @return the number of live classes
+   */
+  int getClassCount() {
+    synchronized (generations) {
+      purge();
+      int count = 0;
+      for (WeakReference<ScriptGeneration> ref : generations) {
+        ScriptGeneration generation = ref.get();
+        if (generation != null) {
+          count += generation.getClassCount();
         }
       }
+      return count;
     }
+  }
 
-    //
-    if (providerRef == null) {
+  private void purge() {
+    for (Reference<? extends ScriptGeneration> ref = collected.poll();ref != null;ref = collected.poll()) {
+      generations.remove(ref);
+    }
+  }
+
+  /**
+   * Compile a script or obtain it from the compiled script cache when it is configured.
+   *
+   * @param name the script name
+   * @param source the script source
+   * @return the compiled script
+   * @throws CompilationFailedException when the script cannot be compiled
+   */
+  private CompiledScript compile(String name, String source) throws CompilationFailedException {
+    CompiledScriptCache cache = getCache();
+    String key = null;
+    if (cache != null) {
+      key = cache.key(name, config.getScriptBaseClass(), source);
+      CompiledScript cached = cache.get(key);
+      if (cached != null) {
+        log.log(Level.FINE, "Loaded compiled script " + name + " from cache " + cache.getDir().getAbsolutePath());
+        return cached;
+      }
+    }
+    CompiledScript compiled = CompiledScript.compile(getGeneration().compiler, config, name, source);
+    if (cache != null) {
+      cache.put(key, compiled);
+    }
+    return compiled;
+  }
+
+  private CompiledScriptCache getCache() {
+    String path = context.getProperty(PropertyDescriptor.COMPILER_CACHE_DIR);
+    if (path == null) {
       return null;
     }
+    CompiledScriptCache current = cache;
+    if (current == null || !current.getDir().getPath().equals(path)) {
+      cache = current = new CompiledScriptCache(new File(path), context.getVersion(), CompiledScriptCache.getClassPath(context.getLoader()));
+    }
+    return current;
+  }
 
-    //
-    return providerRef.getObject();
+  /**
+   * Compile all the scripts of this manager in the background on a bounded pool of threads. The
+   * compiled classes are published in the class cache so the first lookup of a command does not
+   * wait for its compilation. The pool is released when all the scripts are compiled.
+   *
+   * @param threads the number of compilation threads
+   * @throws IllegalArgumentException if the number of threads is not positive
+   */
+  void warmUp(final int threads) throws IllegalArgumentException {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Number of threads must be positive instead of " + threads);
+    }
+    final ExecutorService pool = Executors.newFixedThreadPool(threads);
+    pool.execute(new Runnable() {
+      public void run() {
+        try {
+          // The periodic refresh may not have happened yet
+          context.refresh();
+          final List<String> names = context.listResourceId(kind);
+          if (names.isEmpty()) {
+            log.log(Level.INFO, "No scripts to compile");
+            return;
+          }
+          final long start = System.currentTimeMillis();
+          final AtomicInteger remaining = new AtomicInteger(names.size());
+          final AtomicInteger failures = new AtomicInteger();
+          log.log(Level.INFO, "Compiling " + names.size() + " scripts with " + threads + " threads");
+          for (final String name : names) {
+            pool.execute(new Runnable() {
+              public void run() {
+                try {
+                  ClassManager.this.getClass(name);
+                  log.log(Level.FINE, "Compiled script " + name);
+                }
+                catch (Throwable t) {
+                  failures.incrementAndGet();
+                  log.log(Level.WARNING, "Could not compile script " + name, t);
+                }
+                finally {
+                  int left = remaining.decrementAndGet();
+                  if (left == 0) {
+                    log.log(Level.INFO, "Compiled " + (names.size() - failures.get()) + " scripts in " +
+                      (System.currentTimeMillis() - start) + " ms with " + failures.get() + " failures");
+                  } else {
+                    log.log(Level.FINE, left + " scripts left to compile");
+                  }
+                }
+              }
+            });
+          }
+        }
+        finally {
+          pool.shutdown();
+        }
+      }
+    });
   }
 
   T getInstance(String name) throws NoSuchCommandException, NullPointerException {
@@ -149,4 +518,18 @@ class ClassManager<T> {
       throw new NoSuchCommandException(name, ErrorType.INTERNAL, "Could not create command " + name + " instance", e);
     }
   }
+
+  /**
+   * A loaded class with the version assigned when it was loaded.
+   */
+  private static class LoadedClass<T> extends TimestampedObject<Class<? extends T>> {
+
+    /** . */
+    private final int version;
+
+    private LoadedClass(long timestamp, Class<? extends T> clazz, int version) {
+      super(timestamp, clazz);
+      this.version = version;
+    }
+  }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.shell.impl.command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The versions of the command classes resolved by a pipeline, a cached pipeline remains valid as long as
+ * the classes of its own commands are not reloaded.
+ */
+class CommandVersions {
+
+  /** . */
+  private final List<String> names = new ArrayList<String>();
+
+  /** . */
+  private final List<Integer> versions = new ArrayList<Integer>();
+
+  /**
+   * Record the version of a resolved command class.
+   *
+   * @param name the command name
+   * @param version the command class version
+   */
+  void add(String name, int version) {
+    names.add(name);
+    versions.add(version);
+  }
+
+  /**
+   * Returns true when the recorded classes are still the classes currently loaded by the manager.
+   *
+   * @param commands the command manager
+   * @return true when the versions are current
+   */
+  boolean isCurrent(ClassManager<?> commands) {
+    for (int i = 0;i < names.size();i++) {
+      if (commands.getVersion(names.get(i)) != versions.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (obj instanceof CommandVersions) {
+      CommandVersions that = (CommandVersions)obj;
+      return names.equals(that.names) && versions.equals(that.versions);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return names.hashCode() ^ versions.hashCode();
+  }
+}
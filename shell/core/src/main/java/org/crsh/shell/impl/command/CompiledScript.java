@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.shell.impl.command;
+
+import groovy.lang.GroovyClassLoader;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.tools.GroovyClass;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The result of a script compilation: the name of the script main class and the bytecode of all
+ * the classes generated by the compiler.
+ */
+class CompiledScript {
+
+  /** . */
+  private static final int FORMAT_VERSION = 1;
+
+  /**
+   * Compile a script.
+   *
+   * @param loader the loader used for resolving the classes referenced by the script
+   * @param config the compiler configuration
+   * @param name the script name
+   * @param source the script source
+   * @return the compiled script
+   * @throws CompilationFailedException when the script cannot be compiled
+   */
+  static CompiledScript compile(GroovyClassLoader loader, CompilerConfiguration config, String name, String source) throws CompilationFailedException {
+    CompilationUnit unit = new CompilationUnit(config, null, loader);
+    SourceUnit su = unit.addSource(name, source);
+    unit.compile(Phases.CLASS_GENERATION);
+    LinkedHashMap<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+    for (Object o : unit.getClasses()) {
+      GroovyClass groovyClass = (GroovyClass)o;
+      classes.put(groovyClass.getName(), groovyClass.getBytes());
+    }
+    String mainClassName = su.getAST().getClasses().get(0).getName();
+    return new CompiledScript(mainClassName, classes);
+  }
+
+  /**
+   * Read a compiled script previously written with {@link #write(java.io.DataOutputStream)}.
+   *
+   * @param in the input
+   * @return the compiled script
+   * @throws IOException any io exception, including an unrecognized format
+   */
+  static CompiledScript read(DataInputStream in) throws IOException {
+    int version = in.readInt();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported compiled script format " + version);
+    }
+    String mainClassName = in.readUTF();
+    int size = in.readInt();
+    LinkedHashMap<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+    for (int i = 0;i < size;i++) {
+      String name = in.readUTF();
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      classes.put(name, bytes);
+    }
+    if (!classes.containsKey(mainClassName)) {
+      throw new IOException("Compiled script does not contain its main class " + mainClassName);
+    }
+    return new CompiledScript(mainClassName, classes);
+  }
+
+  /** . */
+  final String mainClassName;
+
+  /** . */
+  final Map<String, byte[]> classes;
+
+  private CompiledScript(String mainClassName, LinkedHashMap<String, byte[]> classes) {
+    this.mainClassName = mainClassName;
+    this.classes = Collections.unmodifiableMap(classes);
+  }
+
+  void write(DataOutputStream out) throws IOException {
+    out.writeInt(FORMAT_VERSION);
+    out.writeUTF(mainClassName);
+    out.writeInt(classes.size());
+    for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(entry.getValue().length);
+      out.write(entry.getValue());
+    }
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.shell.impl.command;
+
+import groovy.lang.GroovySystem;
+import org.crsh.util.Safe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An on disk cache of compiled scripts, the entries are keyed by a digest of the script source, the script name,
+ * the script base class, the Groovy version, the CRaSH version and the compilation class path so they never
+ * need to be invalidated explicitly.
+ */
+class CompiledScriptCache {
+
+  /** . */
+  private static final Logger log = Logger.getLogger(CompiledScriptCache.class.getName());
+
+  /** . */
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /** . */
+  private final File dir;
+
+  /** The CRaSH version. */
+  private final String version;
+
+  /** The compilation class path. */
+  private final String classPath;
+
+  CompiledScriptCache(File dir, String version, String classPath) throws NullPointerException {
+    if (dir == null) {
+      throw new NullPointerException("No null cache dir accepted");
+    }
+    if (version == null) {
+      throw new NullPointerException("No null version accepted");
+    }
+    if (classPath == null) {
+      throw new NullPointerException("No null class path accepted");
+    }
+    this.dir = dir;
+    this.version = version;
+    this.classPath = classPath;
+  }
+
+  /**
+   * Describes the class path of a loader and its parents, the modification time of the file entries is
+   * included so a rebuilt jar changes the class path.
+   *
+   * @param loader the loader
+   * @return the class path description
+   */
+  static String getClassPath(ClassLoader loader) {
+    StringBuilder sb = new StringBuilder();
+    for (ClassLoader current = loader;current != null;current = current.getParent()) {
+      if (current instanceof URLClassLoader) {
+        for (URL url : ((URLClassLoader)current).getURLs()) {
+          sb.append(url);
+          if ("file".equals(url.getProtocol())) {
+            sb.append('@').append(new File(url.getPath()).lastModified());
+          }
+          sb.append(File.pathSeparatorChar);
+        }
+      } else {
+        sb.append(current.getClass().getName()).append(File.pathSeparatorChar);
+      }
+    }
+    return sb.toString();
+  }
+
+  File getDir() {
+    return dir;
+  }
+
+  /**
+   * Compute the cache key of a script.
+   *
+   * @param name the script name
+   * @param scriptBaseClass the script base class name
+   * @param source the script source
+   * @return the key
+   */
+  String key(String name, String scriptBaseClass, String source) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      digest.update(GroovySystem.getVersion().getBytes("UTF-8"));
+      digest.update((byte)0);
+      digest.update(version.getBytes("UTF-8"));
+      digest.update((byte)0);
+      digest.update(classPath.getBytes("UTF-8"));
+      digest.update((byte)0);
+      digest.update(String.valueOf(scriptBaseClass).getBytes("UTF-8"));
+      digest.update((byte)0);
+      digest.update(name.getBytes("UTF-8"));
+      digest.update((byte)0);
+      digest.update(source.getBytes("UTF-8"));
+      byte[] bytes = digest.digest();
+      char[] chars = new char[bytes.length * 2];
+      for (int i = 0;i < bytes.length;i++) {
+        chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+        chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+      }
+      return new String(chars);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+    catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Returns the cached script for the specified key or null if it cannot be found. An unreadable entry
+   * is treated as a missing entry.
+   *
+   * @param key the key
+   * @return the compiled script
+   */
+  CompiledScript get(String key) {
+    File file = new File(dir, key + ".classes");
+    if (file.isFile()) {
+      DataInputStream in = null;
+      try {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        return CompiledScript.read(in);
+      }
+      catch (IOException e) {
+        log.log(Level.WARNING, "Could not read cached compiled script " + file.getAbsolutePath(), e);
+      }
+      finally {
+        Safe.close(in);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Stores a compiled script, the entry is written to a temporary file first and then renamed so
+   * concurrent readers never observe a partial entry.
+   *
+   * @param key the key
+   * @param script the compiled script
+   */
+  void put(String key, CompiledScript script) {
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      log.log(Level.WARNING, "Could not create compiled script cache dir " + dir.getAbsolutePath());
+      return;
+    }
+    File tmp = null;
+    DataOutputStream out = null;
+    try {
+      tmp = File.createTempFile(key, ".tmp", dir);
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+      script.write(out);
+      out.close();
+      out = null;
+      File file = new File(dir, key + ".classes");
+      if (tmp.renameTo(file)) {
+        tmp = null;
+      } else if (!file.isFile()) {
+        log.log(Level.WARNING, "Could not store compiled script " + file.getAbsolutePath());
+      }
+    }
+    catch (IOException e) {
+      log.log(Level.WARNING, "Could not store compiled script " + key + " in " + dir.getAbsolutePath(), e);
+    }
+    finally {
+      Safe.close(out);
+      if (tmp != null) {
+        tmp.delete();
+      }
+    }
+  }
+}
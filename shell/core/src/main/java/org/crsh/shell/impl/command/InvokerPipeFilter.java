@@ -22,25 +22,39 @@ package org.crsh.shell.impl.command;
 import org.crsh.command.CommandInvoker;
 import org.crsh.command.InvocationContext;
 import org.crsh.command.ScriptException;
+import org.crsh.io.BatchPipe;
+import org.crsh.io.ConsumerStatus;
 import org.crsh.io.Filter;
+import org.crsh.io.Pipes;
 import org.crsh.io.ProducerConsumer;
 import org.crsh.io.ProducerContext;
+import org.crsh.io.Selection;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * A pipe filter that invokes a command through a {@link CommandInvoker}.
  */
-class InvokerPipeFilter<C, P> implements Filter<C, P> {
+class InvokerPipeFilter<C, P> implements Filter<C, P>, BatchPipe<C>, ConsumerStatus, Selection {
 
   /** . */
   final ProducerConsumer<C, P> command;
 
+  /** The type checked for each consumed element or null when the command consumes any object. */
+  private final Class<C> checkedType;
+
   /** . */
   private ProducerContext<P> context;
 
   InvokerPipeFilter(ProducerConsumer<C, P> command) {
+    Class<C> consumedType = command.getConsumedType();
+
+    //
     this.command = command;
+    this.checkedType = consumedType == Object.class ? null : consumedType;
   }
 
   public void invoke(InvocationContext<P> context) throws ScriptException, IOException {
@@ -77,6 +91,14 @@ class InvokerPipeFilter<C, P> implements Filter<C, P> {
     return context.readLine(msg, echo);
   }
 
+  public boolean isDone() {
+    return Pipes.isDone(command) || Pipes.isDone(context);
+  }
+
+  public Map<String, Pattern> getSelection() {
+    return Pipes.getSelection(command);
+  }
+
   public int getWidth() {
     return context.getWidth();
   }
@@ -94,12 +116,28 @@ class InvokerPipeFilter<C, P> implements Filter<C, P> {
     command.open(context);
   }
 
+  private boolean accept(C element) {
+    return checkedType == null ? element != null : checkedType.isInstance(element);
+  }
+
   public void provide(C element) throws IOException {
-    if (command.getConsumedType().isInstance(element)) {
+    if (accept(element)) {
       command.provide(element);
     }
   }
 
+  public void provideAll(Iterable<? extends C> elements) throws IOException {
+    ArrayList<C> accepted = new ArrayList<C>();
+    for (C element : elements) {
+      if (accept(element)) {
+        accepted.add(element);
+      }
+    }
+    if (accepted.size() > 0) {
+      Pipes.provideAll(command, accepted);
+    }
+  }
+
   public void flush() throws IOException {
     command.flush();
   }
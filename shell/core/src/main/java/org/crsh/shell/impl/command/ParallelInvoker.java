@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.command;
+
+import org.crsh.command.CommandContext;
+import org.crsh.command.CommandInvoker;
+import org.crsh.command.NoSuchCommandException;
+import org.crsh.command.ScriptException;
+import org.crsh.io.ConsumerStatus;
+import org.crsh.io.Pipes;
+import org.crsh.io.ProducerContext;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Invokes a command concurrently on the consumed elements. Each thread owns its own command instance, the elements
+ * produced by a command while consuming an element are emitted either in the order the elements were consumed or
+ * as soon as they are available. The elements produced when the commands are flushed or closed are emitted after
+ * the elements produced for the consumed elements.
+ *
+ * @param <C> the consumed generic type
+ * @param <P> the produced generic type
+ */
+class ParallelInvoker<C, P> implements CommandInvoker<C, P> {
+
+  /** The invoked command. */
+  private final PipeLineFactory command;
+
+  /** . */
+  private final int threads;
+
+  /** . */
+  private final boolean ordered;
+
+  /** The workers, they are created when the command is resolved. */
+  private List<Worker> workers;
+
+  /** The pending results in consumption order, only used in ordered mode. */
+  private final LinkedList<Future<List<P>>> pending;
+
+  /** The idle workers. */
+  private BlockingQueue<Worker> idle;
+
+  /** . */
+  private ExecutorService executor;
+
+  /** Completes the results as they are available, only used in unordered mode. */
+  private CompletionService<List<P>> completion;
+
+  /** The number of running tasks. */
+  private int running;
+
+  /** . */
+  private ProducerContext<P> context;
+
+  ParallelInvoker(PipeLineFactory command, int threads, boolean ordered) {
+    this.command = command;
+    this.threads = threads;
+    this.ordered = ordered;
+    this.pending = new LinkedList<Future<List<P>>>();
+  }
+
+  /**
+   * Resolve a command instance per thread.
+   *
+   * @param session the session
+   * @param versions records the versions of the resolved command classes
+   * @throws NoSuchCommandException if the command cannot be found
+   */
+  void resolve(CRaSHSession session, CommandVersions versions) throws NoSuchCommandException {
+    CommandInvoker<C, P> first = (CommandInvoker<C, P>)command.resolveInvoker(session, versions);
+
+    // A command that does not consume anything would produce its elements once per thread
+    int size = first.getConsumedType() == Void.class ? 1 : threads;
+
+    //
+    List<Worker> workers = new ArrayList<Worker>(size);
+    workers.add(new Worker(first));
+    while (workers.size() < size) {
+      workers.add(new Worker((CommandInvoker<C, P>)command.resolveInvoker(session, versions)));
+    }
+    this.workers = workers;
+  }
+
+  private List<Worker> getWorkers() {
+    if (workers == null) {
+      throw new IllegalStateException("The parallel command is not resolved");
+    }
+    return workers;
+  }
+
+  public void setSession(CommandContext session) {
+    if (workers != null) {
+      for (Worker worker : workers) {
+        worker.invoker.setSession(session);
+      }
+    }
+  }
+
+  public Class<C> getConsumedType() {
+    return getWorkers().get(0).invoker.getConsumedType();
+  }
+
+  public Class<P> getProducedType() {
+    return getWorkers().get(0).invoker.getProducedType();
+  }
+
+  public void setPiped(boolean piped) {
+    for (Worker worker : workers) {
+      worker.invoker.setPiped(piped);
+    }
+  }
+
+  public void open(ProducerContext<P> context) {
+    final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    final AtomicInteger count = new AtomicInteger();
+    ThreadFactory factory = new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "CRaSH parallel " + count.incrementAndGet());
+        thread.setDaemon(true);
+        thread.setContextClassLoader(loader);
+        return thread;
+      }
+    };
+
+    // The threads terminate when they are idle as the invoker is not closed when the pipeline fails
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(workers.size(), workers.size(), 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), factory);
+    executor.allowCoreThreadTimeOut(true);
+
+    //
+    this.context = context;
+    this.executor = executor;
+    this.idle = new LinkedBlockingQueue<Worker>();
+    this.completion = ordered ? null : new ExecutorCompletionService<List<P>>(executor);
+
+    //
+    for (Worker worker : workers) {
+      worker.invoker.open(worker);
+      idle.add(worker);
+    }
+  }
+
+  public void provide(final C element) throws IOException {
+    Callable<List<P>> task = new Callable<List<P>>() {
+      public List<P> call() throws Exception {
+        Worker worker = idle.take();
+        try {
+          worker.invoker.provide(element);
+          return worker.take();
+        }
+        finally {
+          idle.add(worker);
+        }
+      }
+    };
+
+    //
+    if (ordered) {
+      pending.add(executor.submit(task));
+    } else {
+      completion.submit(task);
+    }
+    running++;
+
+    // Emit what is available and block the producer when too many elements are queued
+    emit(workers.size() * 2);
+  }
+
+  public void flush() throws IOException {
+    emit(0);
+    for (Worker worker : workers) {
+      worker.invoker.flush();
+      Pipes.provideAll(context, worker.take());
+    }
+    context.flush();
+  }
+
+  public void close() {
+    try {
+      emit(0);
+      for (Worker worker : workers) {
+        worker.invoker.close();
+        Pipes.provideAll(context, worker.take());
+      }
+    }
+    catch (IOException e) {
+      throw new ScriptException(e);
+    }
+    finally {
+      abort();
+    }
+  }
+
+  /**
+   * Emit the available results, this method blocks until no more than <code>max</code> tasks are running.
+   *
+   * @param max the maximum number of running tasks
+   * @throws IOException any io exception
+   */
+  private void emit(int max) throws IOException {
+    while (running > 0) {
+      Future<List<P>> future;
+      if (ordered) {
+        future = running > max || pending.getFirst().isDone() ? pending.removeFirst() : null;
+      } else if (running > max) {
+        try {
+          future = completion.take();
+        }
+        catch (InterruptedException e) {
+          abort();
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      } else {
+        future = completion.poll();
+      }
+      if (future == null) {
+        break;
+      }
+      running--;
+      Pipes.provideAll(context, get(future));
+    }
+  }
+
+  private List<P> get(Future<List<P>> future) throws IOException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      abort();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    catch (ExecutionException e) {
+      abort();
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException)cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      } else if (cause instanceof Error) {
+        throw (Error)cause;
+      } else {
+        throw new ScriptException(cause);
+      }
+    }
+  }
+
+  /**
+   * Cancel the running tasks and stop the threads.
+   */
+  private void abort() {
+    if (executor != null) {
+      for (Future<List<P>> future : pending) {
+        future.cancel(true);
+      }
+      pending.clear();
+      running = 0;
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * A command instance and the elements it produced.
+   */
+  private class Worker implements ProducerContext<P>, ConsumerStatus {
+
+    /** . */
+    private final CommandInvoker<C, P> invoker;
+
+    /** . */
+    private List<P> produced;
+
+    private Worker(CommandInvoker<C, P> invoker) {
+      this.invoker = invoker;
+      this.produced = new ArrayList<P>();
+    }
+
+    /**
+     * Returns the elements produced since the last call.
+     *
+     * @return the produced elements
+     */
+    private List<P> take() {
+      List<P> taken = produced;
+      produced = new ArrayList<P>();
+      return taken;
+    }
+
+    public Class<P> getConsumedType() {
+      return context.getConsumedType();
+    }
+
+    public void provide(P element) throws IOException {
+      produced.add(element);
+    }
+
+    public void flush() throws IOException {
+      // The produced elements are emitted by the invoker
+    }
+
+    public boolean takeAlternateBuffer() throws IOException {
+      return context.takeAlternateBuffer();
+    }
+
+    public boolean releaseAlternateBuffer() throws IOException {
+      return context.releaseAlternateBuffer();
+    }
+
+    public String getProperty(String propertyName) {
+      return context.getProperty(propertyName);
+    }
+
+    public String readLine(String msg, boolean echo) {
+      return context.readLine(msg, echo);
+    }
+
+    public boolean isDone() {
+      return Pipes.isDone(context);
+    }
+
+    public int getWidth() {
+      return context.getWidth();
+    }
+
+    public int getHeight() {
+      return context.getHeight();
+    }
+  }
+}
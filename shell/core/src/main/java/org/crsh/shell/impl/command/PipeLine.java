@@ -22,13 +22,19 @@ package org.crsh.shell.impl.command;
 import org.crsh.command.CommandContext;
 import org.crsh.command.CommandInvoker;
 import org.crsh.command.ScriptException;
+import org.crsh.io.BatchPipe;
 import org.crsh.io.Filter;
+import org.crsh.io.Pipes;
 import org.crsh.io.ProducerContext;
 import org.crsh.text.Chunk;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 
-class PipeLine implements CommandInvoker {
+class PipeLine implements CommandInvoker, BatchPipe {
+
+  /** The maximum time in milliseconds to wait for the concurrent stages when the pipeline is aborted. */
+  private static final long ABORT_TIMEOUT = 5000;
 
   /** . */
   private final CRaSHSession session;
@@ -36,15 +42,129 @@ class PipeLine implements CommandInvoker {
   /** . */
   private final Filter[] pipes;
 
+  /** The capacity of the queues between the stages or 0 when the stages are invoked by the caller thread. */
+  private final int queueSize;
+
+  /** The concurrent stages, the first stage is always invoked by the caller thread. */
+  private PipeStage[] stages;
+
+  /** The plan used to connect the stages. */
+  private PipeLinePlan plan;
+
+  /** The versions of the command classes of the stages or null when they are unknown. */
+  private final CommandVersions versions;
+
+  /** The index of the first opened pipe. */
+  private int opened;
+
   PipeLine(CRaSHSession session, Filter[] pipes) {
+    this(session, pipes, 0, null, null);
+  }
+
+  PipeLine(CRaSHSession session, Filter[] pipes, int queueSize, PipeLinePlan plan, CommandVersions versions) {
     this.session = session;
     this.pipes = pipes;
+    this.queueSize = queueSize;
+    this.plan = plan;
+    this.versions = versions;
+    this.opened = pipes.length;
+  }
+
+  /**
+   * Returns the plan of this pipeline, it is available once the pipeline is opened.
+   *
+   * @return the plan
+   */
+  PipeLinePlan getPlan() {
+    return plan;
   }
 
   void invoke(ProcessInvocationContext context) throws ScriptException, IOException {
-    open(context);
-    flush();
-    close();
+    boolean closed = false;
+    try {
+      open(context);
+      flush();
+      closed = true;
+      close();
+      await();
+    }
+    finally {
+      abort();
+      if (!closed) {
+        release();
+      }
+    }
+  }
+
+  /**
+   * Close the opened pipes after a failure so they can release their resources, the failures
+   * of the close are ignored to not hide the original failure.
+   */
+  private void release() {
+    // The concurrent stages close their pipe when they are aborted
+    int to = stages != null ? 1 : pipes.length;
+    for (int i = opened;i < to;i++) {
+      try {
+        pipes[i].close();
+      }
+      catch (Exception ignore) {
+      }
+    }
+  }
+
+  /**
+   * Wait until the concurrent stages are closed and rethrow the first failure.
+   *
+   * @throws ScriptException any script exception
+   * @throws IOException any io exception
+   */
+  private void await() throws ScriptException, IOException {
+    if (stages != null) {
+      for (int i = 1;i < stages.length;i++) {
+        try {
+          stages[i].join();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+      for (int i = 1;i < stages.length;i++) {
+        PipeStage.rethrow(stages[i].getFailure());
+      }
+    }
+  }
+
+  /**
+   * Abort the concurrent stages and wait until they are closed, so they do not use the invocation context
+   * after the pipeline returns. The wait is bounded as a stage may not respond to the interruption.
+   */
+  private void abort() {
+    if (stages != null) {
+      for (int i = 1;i < stages.length;i++) {
+        if (stages[i] != null) {
+          stages[i].abort();
+        }
+      }
+      boolean interrupted = Thread.interrupted();
+      long deadline = System.currentTimeMillis() + ABORT_TIMEOUT;
+      for (int i = 1;i < stages.length;i++) {
+        if (stages[i] != null) {
+          while (true) {
+            try {
+              stages[i].join(Math.max(0, deadline - System.currentTimeMillis()));
+              break;
+            }
+            catch (InterruptedException e) {
+              interrupted = true;
+            }
+          }
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
   }
 
   public void setSession(CommandContext session) {
@@ -66,35 +186,35 @@ class PipeLine implements CommandInvoker {
   public void open(ProducerContext context) {
     ProducerContext<?> last = context;
 
+    // The plan is resolved only when it was not provided or when it was computed for other command classes
+    Class<?> contextType = context.getConsumedType();
+    if (plan == null || !plan.applies(versions, contextType)) {
+      plan = PipeLinePlan.create(pipes, contextType, versions);
+    }
+
+    //
+    if (queueSize > 0 && pipes.length > 1) {
+      stages = new PipeStage[pipes.length];
+    }
+
     for (int i = pipes.length - 1;i >= 0;i--) {
 
       //
       ProducerContext<?> next;
-
-      //
-      Class produced = pipes[i].getProducedType();
-      Class<?> consumed = last.getConsumedType();
-
-      if (consumed.isAssignableFrom(produced)) {
-        next = last;
-      } else {
-
-        // Try to adapt
-        if (produced.equals(Void.class)) {
-          throw new UnsupportedOperationException(produced.getSimpleName() + " -> " + consumed.getSimpleName());
-        } else if (consumed.equals(Void.class)) {
-          SinkPipeFilter filter = new SinkPipeFilter(consumed);
-          filter.open(last);
-          next = filter;
-        } else if (consumed.equals(Chunk.class)) {
-          ToChunkPipeFilter filter = new ToChunkPipeFilter();
-          filter.open((ProducerContext<Chunk>)last);
-          next = filter;
-        } else {
-          SinkPipeFilter filter = new SinkPipeFilter(consumed);
-          filter.open(last);
-          next = filter;
-        }
+      switch (plan.getAdapter(i)) {
+        case DIRECT:
+          next = last;
+          break;
+        case CHUNK:
+          ToChunkPipeFilter chunkFilter = new ToChunkPipeFilter();
+          chunkFilter.open((ProducerContext<Chunk>)last);
+          next = chunkFilter;
+          break;
+        default:
+          SinkPipeFilter sinkFilter = new SinkPipeFilter(last.getConsumedType());
+          sinkFilter.open(last);
+          next = sinkFilter;
+          break;
       }
 
       //
@@ -104,20 +224,56 @@ class PipeLine implements CommandInvoker {
 
       //
       pipes[i].open(next);
+      opened = i;
 
-      //
-      last = pipes[i];
+      // The stage thread is started before the previous stages are opened as they can produce when opened
+      if (stages != null && i > 0) {
+        PipeStage stage = new PipeStage(pipes[i], queueSize, i < pipes.length - 1 ? stages[i + 1] : null);
+        stage.start();
+        stages[i] = stage;
+        last = stage;
+      } else {
+        last = pipes[i];
+      }
     }
   }
 
   public void close() {
-    pipes[0].close();
+    if (stages != null) {
+      pipes[0].close();
+
+      // Closes the concurrent stages one after the other once they have consumed their elements
+      stages[1].close();
+    } else {
+      close(0);
+    }
+  }
+
+  /**
+   * Close the pipes from the specified index, a pipe is closed after its producers so it can still
+   * consume the elements they provide when they are closed.
+   *
+   * @param index the index of the first pipe to close
+   */
+  private void close(int index) {
+    if (index < pipes.length) {
+      try {
+        pipes[index].close();
+      }
+      finally {
+        close(index + 1);
+      }
+    }
   }
 
   public void provide(Object element) throws IOException {
     pipes[0].provide(element);
   }
 
+  public void provideAll(Iterable elements) throws IOException {
+    Pipes.provideAll(pipes[0], elements);
+  }
+
   public void flush() throws IOException {
     pipes[0].flush();
   }
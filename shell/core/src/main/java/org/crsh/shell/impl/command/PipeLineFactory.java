@@ -19,17 +19,23 @@
 
 package org.crsh.shell.impl.command;
 
+import org.crsh.cmdline.matcher.CommandMatch;
+import org.crsh.command.CRaSHCommand;
 import org.crsh.command.CommandInvoker;
 import org.crsh.command.NoSuchCommandException;
 import org.crsh.command.ScriptException;
 import org.crsh.command.ShellCommand;
+import org.crsh.command.SyntaxException;
 import org.crsh.io.Filter;
+import org.crsh.plugin.PropertyDescriptor;
 import org.crsh.shell.ErrorType;
 import org.crsh.shell.ShellResponse;
 import org.crsh.shell.ShellProcessContext;
 import org.crsh.util.Safe;
 
+import java.lang.reflect.Method;
 import java.util.LinkedList;
+import java.util.logging.Level;
 import java.util.regex.Pattern;
 
 /**
@@ -37,6 +43,18 @@ import java.util.regex.Pattern;
  */
 public class PipeLineFactory {
 
+  /**
+   * The session attribute that overrides the {@link PropertyDescriptor#PIPELINE_QUEUE_SIZE} property for
+   * a session, a value of <code>0</code> disables the concurrent execution of the pipeline stages.
+   */
+  public static final String QUEUE_SIZE_ATTRIBUTE = "pipeline.queue_size";
+
+  /** . */
+  private static final Pattern NAME_PATTERN = Pattern.compile("^\\s*(\\S+)");
+
+  /** . */
+  private static final Pattern PARALLEL_OPTION_PATTERN = Pattern.compile("^\\s*(?:(?:-n|--threads)\\s+(\\d+)|(-u|--unordered))(?=\\s|$)");
+
   /** . */
   final String line;
 
@@ -49,14 +67,19 @@ public class PipeLineFactory {
   /** . */
   final PipeLineFactory next;
 
+  /** The match of the command line, it is reused as long as the command has the same class. */
+  private volatile CachedMatch match;
+
+  /** The plan of the last pipeline created by this factory. */
+  volatile PipeLinePlan plan;
+
   public String getLine() {
     return line;
   }
 
   PipeLineFactory(String line, PipeLineFactory next) {
 
-    Pattern p = Pattern.compile("^\\s*(\\S+)");
-    java.util.regex.Matcher m = p.matcher(line);
+    java.util.regex.Matcher m = NAME_PATTERN.matcher(line);
     String name = null;
     String rest = null;
     if (m.find()) {
@@ -71,28 +94,104 @@ public class PipeLineFactory {
     this.next = next;
   }
 
+  /**
+   * Create the invoker of the <code>parallel</code> command: <code>parallel [-n threads] [-u] command</code>
+   * invokes a command concurrently on the consumed elements, the <code>-u</code> option emits the produced
+   * elements as soon as they are available instead of the consumption order. The command line is parsed here
+   * because the options of the invoked command must not be parsed as the options of the parallel command.
+   *
+   * @param line the parallel command line
+   * @return the invoker
+   * @throws SyntaxException if the command line is not valid
+   */
+  public static CommandInvoker<?, ?> createParallel(String line) throws SyntaxException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    boolean ordered = true;
+    String command = line;
+    for (java.util.regex.Matcher m = PARALLEL_OPTION_PATTERN.matcher(command);m.find();m = PARALLEL_OPTION_PATTERN.matcher(command)) {
+      if (m.group(1) != null) {
+        threads = Integer.parseInt(m.group(1));
+        if (threads < 1) {
+          throw new SyntaxException("Invalid parallel thread count " + threads);
+        }
+      } else {
+        ordered = false;
+      }
+      command = command.substring(m.end());
+    }
+    PipeLineFactory factory = new PipeLineFactory(command, null);
+    if (factory.name == null) {
+      throw new SyntaxException("Missing parallel command");
+    }
+    return new ParallelInvoker(factory, threads, ordered);
+  }
+
   public PipeLine create(CRaSHSession session) throws NoSuchCommandException {
+    return create(session, 0, new CommandVersions());
+  }
+
+  /**
+   * Create a pipeline, the plan of the previous pipeline created by this factory is reused when it applies.
+   *
+   * @param session the session
+   * @param queueSize the queue size
+   * @param versions records the versions of the resolved command classes
+   * @return the pipeline
+   * @throws NoSuchCommandException if a command cannot be found
+   */
+  PipeLine create(CRaSHSession session, int queueSize, CommandVersions versions) throws NoSuchCommandException {
 
     //
-    LinkedList<InvokerPipeFilter> pipes = new LinkedList<InvokerPipeFilter>();
+    LinkedList<Filter> pipes = new LinkedList<Filter>();
     for (PipeLineFactory current = this;current != null;current = current.next) {
-      CommandInvoker commandInvoker = null;
-      if (current.name != null) {
-        ShellCommand command = session.crash.getCommand(current.name);
-        if (command != null) {
-          commandInvoker = command.resolveInvoker(current.rest);
-        }
-      }
-      if (commandInvoker == null) {
-        throw new NoSuchCommandException(current.name);
-      } else {
-        commandInvoker.setSession(session);
-      }
+      CommandInvoker commandInvoker = current.resolveInvoker(session, versions);
       pipes.add(new InvokerPipeFilter(commandInvoker));
     }
 
-    //
-    return new PipeLine(session, pipes.toArray(new Filter[pipes.size()]));
+    // The plan is checked against the command class versions when the pipeline is opened
+    return new PipeLine(session, pipes.toArray(new Filter[pipes.size()]), queueSize, plan, versions);
+  }
+
+  /**
+   * Resolve the invoker of this stage with a new command instance.
+   *
+   * @param session the session
+   * @param versions records the versions of the resolved command classes
+   * @return the invoker
+   * @throws NoSuchCommandException if the command cannot be found
+   */
+  CommandInvoker<?, ?> resolveInvoker(CRaSHSession session, CommandVersions versions) throws NoSuchCommandException {
+    CommandInvoker<?, ?> commandInvoker = null;
+    if (name != null) {
+      ShellCommand command = session.crash.getCommand(name);
+      if (command != null) {
+        versions.add(name, session.crash.commands.getVersion(name, command.getClass()));
+        commandInvoker = resolveInvoker(command);
+      }
+    }
+    if (commandInvoker == null) {
+      throw new NoSuchCommandException(name);
+    }
+    commandInvoker.setSession(session);
+    if (commandInvoker instanceof ParallelInvoker<?, ?>) {
+      // The invoked command is resolved with the session
+      ((ParallelInvoker<?, ?>)commandInvoker).resolve(session, versions);
+    }
+    return commandInvoker;
+  }
+
+  private CommandInvoker<?, ?> resolveInvoker(ShellCommand command) {
+    if (command instanceof CRaSHCommand) {
+      CRaSHCommand crashCommand = (CRaSHCommand)command;
+      CachedMatch cached = match;
+      if (cached == null || cached.type != command.getClass()) {
+        match = cached = new CachedMatch(crashCommand, rest);
+      }
+      if (cached.value != null) {
+        return crashCommand.resolveInvoker(cached.value);
+      }
+    }
+    return command.resolveInvoker(rest);
   }
 
   PipeLineFactory getLast() {
@@ -110,12 +209,17 @@ public class PipeLineFactory {
 
         //
         PipeLine proxy;
+        CommandVersions versions = new CommandVersions();
         try {
-          proxy = create(crash);
+          proxy = create(crash, getQueueSize(crash), versions);
         }
         catch (NoSuchCommandException e) {
           return ShellResponse.unknownCommand(e.getCommandName());
         }
+        catch (ScriptException e) {
+          // A command line that the command cannot resolve
+          return build(e);
+        }
 
         //
         ProcessInvocationContext invocationContext = new ProcessInvocationContext(session, context);
@@ -129,11 +233,39 @@ public class PipeLineFactory {
         } finally {
           Safe.close(invocationContext);
         }
+
+        // Keep the pipeline and its plan for the next execution of the same request, unless one of its
+        // command classes was reloaded meanwhile
+        if (versions.isCurrent(crash.crash.commands)) {
+          PipeLinePlan plan = proxy.getPlan();
+          if (plan != null) {
+            PipeLineFactory.this.plan = plan;
+          }
+          crash.crash.putPipeLine(request, PipeLineFactory.this, versions);
+        }
+
+        //
         return ShellResponse.ok();
       }
     };
   }
 
+  private static int getQueueSize(CRaSHSession session) {
+    Object value = session.get(QUEUE_SIZE_ATTRIBUTE);
+    if (value instanceof Number) {
+      return ((Number)value).intValue();
+    } else if (value != null) {
+      try {
+        return Integer.parseInt(value.toString().trim());
+      }
+      catch (NumberFormatException e) {
+        CRaSHSession.log.log(Level.WARNING, "Invalid " + QUEUE_SIZE_ATTRIBUTE + " session attribute " + value);
+      }
+    }
+    Integer queueSize = session.crash.getContext().getProperty(PropertyDescriptor.PIPELINE_QUEUE_SIZE);
+    return queueSize != null ? queueSize : 0;
+  }
+
   private ShellResponse.Error build(Throwable throwable) {
     ErrorType errorType;
     if (throwable instanceof ScriptException) {
@@ -170,4 +302,32 @@ public class PipeLineFactory {
       return ShellResponse.error(errorType, result, throwable);
     }
   }
+
+  /**
+   * The match of a command line for a command class.
+   */
+  private static class CachedMatch {
+
+    /** . */
+    private final Class<?> type;
+
+    /** The match or null when the command class resolves its invoker from the command line itself. */
+    private final CommandMatch<CRaSHCommand, ?, ?> value;
+
+    private CachedMatch(CRaSHCommand command, String line) {
+      Class<?> type = command.getClass();
+      CommandMatch<CRaSHCommand, ?, ?> value;
+      try {
+        Method resolveInvoker = type.getMethod("resolveInvoker", String.class);
+        value = resolveInvoker.getDeclaringClass() == CRaSHCommand.class ? command.match(line) : null;
+      }
+      catch (NoSuchMethodException e) {
+        throw new AssertionError(e);
+      }
+
+      //
+      this.type = type;
+      this.value = value;
+    }
+  }
 }
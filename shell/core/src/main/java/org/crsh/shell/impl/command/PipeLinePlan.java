@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.shell.impl.command;
+
+import org.crsh.io.Filter;
+import org.crsh.text.Chunk;
+
+/**
+ * The resolved plan of a pipeline: how the elements produced by each stage are adapted to the stage
+ * that consumes them. A plan is computed once from the types of the stages and reused by the pipelines
+ * that resolve the same command classes: the types of a stage only depend on its command class and on
+ * its command line, so the plan is checked with the class versions instead of the stage types.
+ */
+class PipeLinePlan {
+
+  /** How the output of a stage is connected to its consumer. */
+  enum Adapter {
+
+    /** The consumer accepts the produced type or checks the type of each element. */
+    DIRECT,
+
+    /** The produced elements are dropped, only flush and close are propagated. */
+    SINK,
+
+    /** The produced elements are rendered as chunks. */
+    CHUNK
+
+  }
+
+  static PipeLinePlan create(Filter<?, ?>[] pipes, Class<?> contextType, CommandVersions versions) throws UnsupportedOperationException {
+    Adapter[] adapters = new Adapter[pipes.length];
+    Class<?> consumed = contextType;
+    for (int i = pipes.length - 1;i >= 0;i--) {
+      Class<?> produced = pipes[i].getProducedType();
+      if (consumed.isAssignableFrom(produced)) {
+        adapters[i] = Adapter.DIRECT;
+      } else if (produced.equals(Void.class)) {
+        throw new UnsupportedOperationException(produced.getSimpleName() + " -> " + consumed.getSimpleName());
+      } else if (consumed.equals(Chunk.class)) {
+        adapters[i] = Adapter.CHUNK;
+      } else if (i < pipes.length - 1 && produced.isAssignableFrom(consumed)) {
+        // A stage that produces a super type, like a head stage, may provide elements the next stage
+        // accepts, the stage checks the type of each element it consumes
+        adapters[i] = Adapter.DIRECT;
+      } else {
+        adapters[i] = Adapter.SINK;
+      }
+      consumed = pipes[i].getConsumedType();
+    }
+    return new PipeLinePlan(contextType, versions, adapters);
+  }
+
+  /** . */
+  private final Class<?> contextType;
+
+  /** The versions of the command classes the plan was computed for or null. */
+  private final CommandVersions versions;
+
+  /** . */
+  private final Adapter[] adapters;
+
+  private PipeLinePlan(Class<?> contextType, CommandVersions versions, Adapter[] adapters) {
+    this.contextType = contextType;
+    this.versions = versions;
+    this.adapters = adapters;
+  }
+
+  /**
+   * Returns true when the plan applies to a pipeline that resolved the specified command class versions.
+   *
+   * @param versions the command class versions
+   * @param contextType the context type
+   * @return true when the plan applies
+   */
+  boolean applies(CommandVersions versions, Class<?> contextType) {
+    return this.versions != null && this.versions.equals(versions) && this.contextType == contextType;
+  }
+
+  /**
+   * Returns the number of stages.
+   *
+   * @return the stage count
+   */
+  int getSize() {
+    return adapters.length;
+  }
+
+  /**
+   * Returns the adapter connecting the output of a stage to its consumer.
+   *
+   * @param index the stage index
+   * @return the adapter
+   */
+  Adapter getAdapter(int index) {
+    return adapters[index];
+  }
+}
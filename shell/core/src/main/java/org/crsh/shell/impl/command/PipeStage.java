@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.shell.impl.command;
+
+import org.crsh.io.BatchPipe;
+import org.crsh.io.ConsumerStatus;
+import org.crsh.io.Filter;
+import org.crsh.io.Pipes;
+import org.crsh.io.ProducerContext;
+import org.crsh.io.Selection;
+
+import org.crsh.command.ScriptException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a stage of a pipeline in a pooled thread. The elements provided by the previous stage are handed to
+ * the stage thread through a bounded queue, the previous stage blocks when the queue is full. Flush and close
+ * are queued as well, so they reach the stage in the order they were sent. The failure of a stage is rethrown
+ * to the previous stage when it provides an element, so the producers stop.
+ *
+ * @param <E> the element generic type
+ */
+class PipeStage<E> implements Filter<E, E>, BatchPipe<E>, ConsumerStatus, Selection, Runnable {
+
+  /** The threads running the stages, they are created on demand and terminate when they are idle. */
+  private static final ExecutorService executor;
+
+  static {
+    final AtomicInteger count = new AtomicInteger();
+    ThreadFactory factory = new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "CRaSH pipe stage " + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+    executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), factory);
+  }
+
+  /** . */
+  private static final Object FLUSH = new Object();
+
+  /** . */
+  private static final Object CLOSE = new Object();
+
+  /** A batch of elements queued as a single entry. */
+  private static class Batch<E> extends ArrayList<E> {
+  }
+
+  /** . */
+  private final Filter<E, ?> filter;
+
+  /** . */
+  private final BlockingQueue<Object> queue;
+
+  /** . */
+  private final PipeStage<?> next;
+
+  /** The context class loader of the stage thread. */
+  private final ClassLoader loader;
+
+  /** Counted down when the stage is closed. */
+  private final CountDownLatch done;
+
+  /** The thread consuming the elements, guarded by this stage. */
+  private Thread thread;
+
+  /** . */
+  private volatile boolean aborted;
+
+  /** . */
+  private volatile Throwable failure;
+
+  /** . */
+  private boolean closed;
+
+  PipeStage(Filter<E, ?> filter, int capacity, PipeStage<?> next) {
+    this.filter = filter;
+    this.queue = new ArrayBlockingQueue<Object>(capacity);
+    this.next = next;
+    this.loader = Thread.currentThread().getContextClassLoader();
+    this.done = new CountDownLatch(1);
+    this.aborted = false;
+    this.closed = false;
+  }
+
+  void start() {
+    executor.execute(this);
+  }
+
+  /**
+   * Wait until the stage has consumed all its elements and has been closed.
+   *
+   * @throws InterruptedException if the current thread is interrupted
+   */
+  void join() throws InterruptedException {
+    done.await();
+  }
+
+  /**
+   * Wait until the stage has been closed or until the timeout elapses.
+   *
+   * @param timeout the timeout in milliseconds
+   * @return true if the stage was closed
+   * @throws InterruptedException if the current thread is interrupted
+   */
+  boolean join(long timeout) throws InterruptedException {
+    return done.await(timeout, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Interrupt the stage thread, the stage stops to consume its elements and is closed. The queue is cleared
+   * to release a previous stage blocked on it and the close is queued in case the filter ignores the interruption.
+   */
+  void abort() {
+    synchronized (this) {
+      aborted = true;
+      if (thread != null) {
+        thread.interrupt();
+      }
+    }
+    queue.clear();
+    queue.offer(CLOSE);
+  }
+
+  /**
+   * Returns the first failure of the stage.
+   *
+   * @return the failure or null
+   */
+  Throwable getFailure() {
+    return failure;
+  }
+
+  /**
+   * Rethrow a stage failure.
+   *
+   * @param failure the failure
+   * @throws ScriptException any script exception
+   * @throws IOException any io exception
+   */
+  static void rethrow(Throwable failure) throws ScriptException, IOException {
+    if (failure instanceof IOException) {
+      throw (IOException)failure;
+    } else if (failure instanceof RuntimeException) {
+      throw (RuntimeException)failure;
+    } else if (failure instanceof Error) {
+      throw (Error)failure;
+    } else if (failure instanceof InterruptedException) {
+      throw new InterruptedIOException();
+    } else if (failure != null) {
+      throw new ScriptException(failure);
+    }
+  }
+
+  public void run() {
+    Thread current = Thread.currentThread();
+    ClassLoader previous = current.getContextClassLoader();
+    current.setContextClassLoader(loader);
+    try {
+      consume(current);
+
+      // The filter is always closed so it can release its resources
+      try {
+        filter.close();
+      }
+      catch (Throwable t) {
+        if (failure == null) {
+          failure = t;
+        }
+      }
+    }
+    finally {
+      try {
+        if (next != null) {
+          next.close();
+        }
+      }
+      finally {
+        current.setContextClassLoader(previous);
+        done.countDown();
+      }
+    }
+  }
+
+  private void consume(Thread current) {
+    synchronized (this) {
+      if (aborted) {
+        failure = new InterruptedException();
+        return;
+      }
+      thread = current;
+    }
+    try {
+      while (true) {
+        Object o = queue.take();
+        if (o == CLOSE || aborted) {
+          break;
+        }
+
+        // After a failure the elements are drained until the previous stage stops
+        if (failure == null) {
+          try {
+            if (o == FLUSH) {
+              filter.flush();
+            } else if (o instanceof Batch<?>) {
+              @SuppressWarnings("unchecked")
+              Batch<E> batch = (Batch<E>)o;
+              Pipes.provideAll(filter, batch);
+            } else {
+              @SuppressWarnings("unchecked")
+              E element = (E)o;
+              filter.provide(element);
+            }
+          }
+          catch (Throwable t) {
+            failure = t;
+          }
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      if (failure == null) {
+        failure = e;
+      }
+    }
+    finally {
+      synchronized (this) {
+        thread = null;
+      }
+
+      // Clear an interrupt that was not delivered while consuming
+      Thread.interrupted();
+    }
+  }
+
+  public Class<E> getProducedType() {
+    return filter.getConsumedType();
+  }
+
+  public Class<E> getConsumedType() {
+    return filter.getConsumedType();
+  }
+
+  public void setPiped(boolean piped) {
+  }
+
+  public void open(ProducerContext<E> context) {
+  }
+
+  public void provide(E element) throws IOException {
+    if (filter.getConsumedType().isInstance(element)) {
+      put(element);
+    }
+  }
+
+  public void provideAll(Iterable<? extends E> elements) throws IOException {
+    Class<E> consumedType = filter.getConsumedType();
+    Batch<E> batch = new Batch<E>();
+    for (E element : elements) {
+      if (consumedType.isInstance(element)) {
+        batch.add(element);
+      }
+    }
+    if (batch.size() > 0) {
+      put(batch);
+    }
+  }
+
+  public void flush() throws IOException {
+    put(FLUSH);
+  }
+
+  public void close() {
+    if (!closed) {
+      closed = true;
+      if (!aborted) {
+        try {
+          queue.put(CLOSE);
+        }
+        catch (InterruptedException e) {
+          // The pipeline is aborted
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  private void put(Object o) throws IOException {
+    if (aborted) {
+      throw new InterruptedIOException();
+    }
+    rethrow(failure);
+    try {
+      queue.put(o);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  public boolean takeAlternateBuffer() throws IOException {
+    return filter.takeAlternateBuffer();
+  }
+
+  public boolean releaseAlternateBuffer() throws IOException {
+    return filter.releaseAlternateBuffer();
+  }
+
+  public String getProperty(String propertyName) {
+    return filter.getProperty(propertyName);
+  }
+
+  public String readLine(String msg, boolean echo) {
+    return filter.readLine(msg, echo);
+  }
+
+  public boolean isDone() {
+    return failure != null || Pipes.isDone(filter);
+  }
+
+  public Map<String, Pattern> getSelection() {
+    return Pipes.getSelection(filter);
+  }
+
+  public int getWidth() {
+    return filter.getWidth();
+  }
+
+  public int getHeight() {
+    return filter.getHeight();
+  }
+}
@@ -19,8 +19,10 @@
 
 package org.crsh.shell.impl.command;
 
+import org.crsh.io.BatchPipe;
 import org.crsh.io.ScreenContext;
 import org.crsh.io.ProducerContext;
+import org.crsh.plugin.PropertyDescriptor;
 import org.crsh.shell.ShellProcessContext;
 import org.crsh.text.Chunk;
 import org.crsh.text.ChunkAdapter;
@@ -30,7 +32,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.Map;
 
-class ProcessInvocationContext implements ProducerContext<Object>, Closeable {
+class ProcessInvocationContext implements ProducerContext<Object>, BatchPipe<Object>, Closeable {
 
   /** . */
   private final CRaSHSession session;
@@ -51,6 +53,9 @@ class ProcessInvocationContext implements ProducerContext<Object>, Closeable {
     // which provides better perormances on the client
     final ChunkBuffer buffer = new ChunkBuffer(processContext);
 
+    // Large streams are rendered by batch when a batch size is configured
+    Integer batchSize = session.crash.getContext().getProperty(PropertyDescriptor.RENDER_BATCH_SIZE);
+
     //
     final ChunkAdapter adapter = new ChunkAdapter(new ScreenContext<Chunk>() {
       public int getWidth() {
@@ -68,7 +73,7 @@ class ProcessInvocationContext implements ProducerContext<Object>, Closeable {
       public void flush() throws IOException {
         buffer.flush();
       }
-    });
+    }, batchSize != null && batchSize > 0 ? batchSize : 0);
 
     //
     this.session = session;
@@ -109,6 +114,10 @@ class ProcessInvocationContext implements ProducerContext<Object>, Closeable {
     adapter.provide(element);
   }
 
+  public void provideAll(Iterable<?> elements) throws IOException {
+    adapter.provideAll(elements);
+  }
+
   public void flush() throws IOException {
     adapter.flush();
   }
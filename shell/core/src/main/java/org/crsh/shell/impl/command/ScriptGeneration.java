@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.shell.impl.command;
+
+import groovy.lang.GroovyClassLoader;
+import org.codehaus.groovy.control.CompilerConfiguration;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A generation of compiled scripts. All the scripts compiled during a generation are defined by the same
+ * class loader and are compiled with the same {@link GroovyClassLoader}. A generation cannot define the
+ * same class twice, so a new generation is started when a script needs to be redefined, which happens
+ * when a refresh detects that a script was modified.
+ */
+class ScriptGeneration extends ClassLoader {
+
+  /** . */
+  final int id;
+
+  /** . */
+  final GroovyClassLoader compiler;
+
+  /** The bytecode of the classes not yet defined. */
+  private final Map<String, byte[]> pending;
+
+  /** The names of all the classes of this generation. */
+  private final Set<String> names;
+
+  /** The number of scripts whose current class belongs to this generation. */
+  private int scripts;
+
+  ScriptGeneration(int id, ClassLoader parent, CompilerConfiguration config) {
+    super(parent);
+
+    //
+    this.id = id;
+    this.compiler = new GroovyClassLoader(parent, config);
+    this.pending = new HashMap<String, byte[]>();
+    this.names = new HashSet<String>();
+    this.scripts = 0;
+  }
+
+  /**
+   * Add the classes of a compiled script to this generation and returns its main class. When one of the
+   * classes is already part of this generation, null is returned and the script must be defined in a new
+   * generation.
+   *
+   * @param script the compiled script
+   * @return the script main class or null
+   * @throws ClassNotFoundException if the main class cannot be loaded
+   */
+  Class<?> define(CompiledScript script) throws ClassNotFoundException {
+    synchronized (this) {
+      for (String name : script.classes.keySet()) {
+        if (names.contains(name)) {
+          return null;
+        }
+      }
+      names.addAll(script.classes.keySet());
+      pending.putAll(script.classes);
+    }
+    return loadClass(script.mainClassName);
+  }
+
+  @Override
+  protected Class<?> findClass(String name) throws ClassNotFoundException {
+    byte[] bytes;
+    synchronized (this) {
+      bytes = pending.remove(name);
+    }
+    if (bytes != null) {
+      return defineClass(name, bytes, 0, bytes.length);
+    } else {
+      throw new ClassNotFoundException(name);
+    }
+  }
+
+  synchronized int getScriptCount() {
+    return scripts;
+  }
+
+  synchronized int getClassCount() {
+    return names.size();
+  }
+
+  synchronized void acquire() {
+    scripts++;
+  }
+
+  /**
+   * Signal that a script class of this generation is not used anymore.
+   *
+   * @return true when no script class of this generation is used anymore
+   */
+  synchronized boolean release() {
+    return --scripts == 0;
+  }
+
+  /**
+   * Release the resources held by this generation, the classes it defines remain usable by the running
+   * processes referencing them and will be unloaded by the garbage collector afterwards.
+   */
+  void dispose() {
+    compiler.clearCache();
+  }
+
+  @Override
+  public String toString() {
+    return "ScriptGeneration[id=" + id + "]";
+  }
+}
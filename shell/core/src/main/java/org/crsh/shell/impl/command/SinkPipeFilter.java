@@ -19,12 +19,15 @@
 
 package org.crsh.shell.impl.command;
 
+import org.crsh.io.BatchPipe;
+import org.crsh.io.ConsumerStatus;
 import org.crsh.io.Filter;
+import org.crsh.io.Pipes;
 import org.crsh.io.ProducerContext;
 
 import java.io.IOException;
 
-class SinkPipeFilter<P> implements Filter<Object, P> {
+class SinkPipeFilter<P> implements Filter<Object, P>, BatchPipe<Object>, ConsumerStatus {
 
   /** . */
   private Filter<P, ?> context;
@@ -67,6 +70,10 @@ class SinkPipeFilter<P> implements Filter<Object, P> {
     return context.readLine(msg, echo);
   }
 
+  public boolean isDone() {
+    return Pipes.isDone(context);
+  }
+
   public int getWidth() {
     return context.getWidth();
   }
@@ -78,6 +85,9 @@ class SinkPipeFilter<P> implements Filter<Object, P> {
   public void provide(Object element) throws IOException {
   }
 
+  public void provideAll(Iterable<?> elements) throws IOException {
+  }
+
   public Class<Object> getConsumedType() {
     return Object.class;
   }
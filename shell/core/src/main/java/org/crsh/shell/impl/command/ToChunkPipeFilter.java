@@ -21,14 +21,17 @@ package org.crsh.shell.impl.command;
 
 import org.crsh.io.ScreenContext;
 import org.crsh.command.ScriptException;
+import org.crsh.io.BatchPipe;
+import org.crsh.io.ConsumerStatus;
 import org.crsh.io.Filter;
+import org.crsh.io.Pipes;
 import org.crsh.io.ProducerContext;
 import org.crsh.text.Chunk;
 import org.crsh.text.ChunkAdapter;
 
 import java.io.IOException;
 
-class ToChunkPipeFilter implements Filter<Object, Chunk> {
+class ToChunkPipeFilter implements Filter<Object, Chunk>, BatchPipe<Object>, ConsumerStatus {
 
   /** . */
   private Filter<Chunk, ?> context;
@@ -80,6 +83,10 @@ class ToChunkPipeFilter implements Filter<Object, Chunk> {
     ca.provide(element);
   }
 
+  public void provideAll(Iterable<?> elements) throws ScriptException, IOException {
+    ca.provideAll(elements);
+  }
+
   public void flush() throws ScriptException, IOException {
     ca.flush();
   }
@@ -96,6 +103,10 @@ class ToChunkPipeFilter implements Filter<Object, Chunk> {
     return context.readLine(msg, echo);
   }
 
+  public boolean isDone() {
+    return Pipes.isDone(context);
+  }
+
   public int getWidth() {
     return context.getWidth();
   }
@@ -19,12 +19,13 @@
 
 package org.crsh.text;
 
+import org.crsh.io.BatchPipe;
 import org.crsh.io.ScreenContext;
 
 import java.io.IOException;
 import java.util.LinkedList;
 
-public class ChunkAdapter implements ScreenContext<Object> {
+public class ChunkAdapter implements ScreenContext<Object>, BatchPipe<Object> {
 
   /** . */
   private final LinkedList<Object> buffer = new LinkedList<Object>();
@@ -35,8 +36,31 @@ public class ChunkAdapter implements ScreenContext<Object> {
   /** . */
   private final RenderAppendable out;
 
+  /** The number of buffered elements that triggers their rendering, zero means unbounded. */
+  private final int batchSize;
+
+  /** The renderer of the last batch of the current stream of elements. */
+  private Renderer previous = null;
+
   public ChunkAdapter(ScreenContext<Chunk> out) {
+    this(out, 0);
+  }
+
+  /**
+   * Create a chunk adapter that renders the elements by batch: when <code>batchSize</code> elements of the
+   * same renderable are buffered they are rendered as the continuation of the previous batch. This bounds
+   * the memory used for a large stream of elements and starts the output before the stream ends.
+   *
+   * @param out the output
+   * @param batchSize the batch size or zero for an unbounded buffer
+   * @throws IllegalArgumentException if the batch size is negative
+   */
+  public ChunkAdapter(ScreenContext<Chunk> out, int batchSize) throws IllegalArgumentException {
+    if (batchSize < 0) {
+      throw new IllegalArgumentException("No negative batch size accepted");
+    }
     this.out = new RenderAppendable(out);
+    this.batchSize = batchSize;
   }
 
   public int getWidth() {
@@ -48,7 +72,25 @@ public class ChunkAdapter implements ScreenContext<Object> {
   }
 
   public void provide(Object element) throws IOException {
-    Renderable current = Renderable.getRenderable(element.getClass());
+    provide(element, Renderable.getRenderable(element.getClass()));
+  }
+
+  public void provideAll(Iterable<?> elements) throws IOException {
+
+    // The renderable lookup is done once for a sequence of elements of the same class
+    Class<?> currentType = null;
+    Renderable current = null;
+    for (Object element : elements) {
+      Class<?> type = element.getClass();
+      if (type != currentType) {
+        current = Renderable.getRenderable(type);
+        currentType = type;
+      }
+      provide(element, current);
+    }
+  }
+
+  private void provide(Object element, Renderable current) throws IOException {
     if (current == null) {
       send();
       if (element instanceof Chunk) {
@@ -62,9 +104,20 @@ public class ChunkAdapter implements ScreenContext<Object> {
       }
       buffer.addLast(element);
       renderable = current;
+      if (batchSize > 0 && buffer.size() >= batchSize) {
+        render();
+        out.flush();
+      }
     }
   }
 
+  private void render() {
+    Renderer renderer = renderable.renderer(buffer.iterator(), previous);
+    renderer.render(out);
+    buffer.clear();
+    previous = renderer;
+  }
+
   public void flush() throws IOException {
     send();
     out.flush();
@@ -72,10 +125,9 @@ public class ChunkAdapter implements ScreenContext<Object> {
 
   public void send() throws IOException {
     if (buffer.size() > 0) {
-      Renderer renderer = renderable.renderer(buffer.iterator());
-      renderer.render(out);
-      buffer.clear();
-      renderable = null;
+      render();
     }
+    renderable = null;
+    previous = null;
   }
 }
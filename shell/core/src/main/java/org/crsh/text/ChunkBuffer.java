@@ -19,17 +19,43 @@
 
 package org.crsh.text;
 
+import org.crsh.io.BatchPipe;
 import org.crsh.io.Pipe;
+import org.crsh.io.Pipes;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.NoSuchElementException;
 
-public class ChunkBuffer implements Iterable<Chunk>, Serializable, Pipe<Chunk> {
+/**
+ * A buffer of chunks. The characters are stored in a single growable array and the chunks are indexed
+ * by a compact list of entries: an entry is either a style or a clear screen marker, or a text run ending at
+ * a given offset of the character array. Adjacent texts are coalesced in the same run and the {@link Text}
+ * chunks are only created when the buffer is iterated or flushed.
+ */
+public class ChunkBuffer implements Iterable<Chunk>, Serializable, BatchPipe<Chunk> {
 
   /** . */
-  private final LinkedList<Chunk> chunks;
+  private static final int INITIAL_CHARS = 64;
+
+  /** . */
+  private static final int INITIAL_ENTRIES = 8;
+
+  /** The characters. */
+  private char[] chars;
+
+  /** The number of characters. */
+  private int length;
+
+  /** The entry markers, a style, a clear screen or null for a text run. */
+  private Chunk[] marks;
+
+  /** The end offset of the entries in the characters. */
+  private int[] ends;
+
+  /** The number of entries. */
+  private int size;
 
   /** . */
   private Style current;
@@ -41,35 +67,49 @@ public class ChunkBuffer implements Iterable<Chunk>, Serializable, Pipe<Chunk> {
   private final Pipe<Chunk> out;
 
   public ChunkBuffer() {
-    this.chunks = new LinkedList<Chunk>();
-    this.current = Style.style();
-    this.next = Style.style();
-    this.out = null;
+    this(null);
   }
 
   public ChunkBuffer(Pipe<Chunk> out) {
-    this.chunks = new LinkedList<Chunk>();
+    this.chars = new char[INITIAL_CHARS];
+    this.length = 0;
+    this.marks = new Chunk[INITIAL_ENTRIES];
+    this.ends = new int[INITIAL_ENTRIES];
+    this.size = 0;
     this.current = Style.style();
     this.next = Style.style();
     this.out = out;
   }
 
   public Iterator<Chunk> iterator() {
-    return chunks.iterator();
+    return new Iterator<Chunk>() {
+      int index = 0;
+      public boolean hasNext() {
+        return index < size;
+      }
+      public Chunk next() {
+        if (index >= size) {
+          throw new NoSuchElementException();
+        }
+        return chunk(index++);
+      }
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
   }
 
   @Deprecated
   public void writeAnsiTo(Appendable appendable) throws IOException {
-    Iterator<Chunk> iterator = iterator();
-    while (iterator.hasNext()) {
-      Chunk chunk = iterator.next();
-      if (chunk instanceof Text) {
-        Text text = (Text)chunk;
-        if (text.buffer.length() > 0) {
-          appendable.append(text.buffer);
+    for (int i = 0;i < size;i++) {
+      Chunk mark = marks[i];
+      if (mark == null) {
+        int start = start(i);
+        if (ends[i] > start) {
+          appendable.append(new String(chars, start, ends[i] - start));
         }
-      } else if (chunk instanceof Style) {
-        ((Style)chunk).writeAnsiTo(appendable);
+      } else if (mark instanceof Style) {
+        ((Style)mark).writeAnsiTo(appendable);
       }
     }
   }
@@ -89,7 +129,7 @@ public class ChunkBuffer implements Iterable<Chunk>, Serializable, Pipe<Chunk> {
   }
 
   public ChunkBuffer cls() {
-    chunks.addLast(CLS.INSTANCE);
+    add(CLS.INSTANCE);
     return this;
   }
 
@@ -99,7 +139,10 @@ public class ChunkBuffer implements Iterable<Chunk>, Serializable, Pipe<Chunk> {
   }
 
   public ChunkBuffer append(char c) {
-    last().buffer.append(c);
+    last();
+    ensureChars(1);
+    chars[length++] = c;
+    ends[size - 1] = length;
     return this;
   }
 
@@ -109,26 +152,86 @@ public class ChunkBuffer implements Iterable<Chunk>, Serializable, Pipe<Chunk> {
 
   public ChunkBuffer append(CharSequence s, int start, int end) {
     if (end > start) {
-      last().buffer.append(s, start, end);
+      last();
+      int len = end - start;
+      ensureChars(len);
+      if (s instanceof String) {
+        ((String)s).getChars(start, end, chars, length);
+      } else if (s instanceof StringBuilder) {
+        ((StringBuilder)s).getChars(start, end, chars, length);
+      } else {
+        for (int i = start;i < end;i++) {
+          chars[length + i - start] = s.charAt(i);
+        }
+      }
+      length += len;
+      ends[size - 1] = length;
     }
     return this;
   }
 
-  private Text last() {
+  private ChunkBuffer append(char[] s, int start, int end) {
+    if (end > start) {
+      last();
+      int len = end - start;
+      ensureChars(len);
+      System.arraycopy(s, start, chars, length, len);
+      length += len;
+      ends[size - 1] = length;
+    }
+    return this;
+  }
+
+  /**
+   * Make the last entry a text run, applying the pending style first.
+   */
+  private void last() {
     if (!next.equals(current)) {
       if (!Style.style().equals(next)) {
-        chunks.addLast(next);
+        add(next);
       }
       current = next;
       next = Style.style();
     }
-    Chunk last = chunks.peekLast();
-    if (last instanceof Text) {
-      return (Text)last;
+    if (size == 0 || marks[size - 1] != null) {
+      add(null);
+    }
+  }
+
+  private void add(Chunk mark) {
+    if (size == marks.length) {
+      int capacity = size * 2;
+      Chunk[] tmp1 = new Chunk[capacity];
+      System.arraycopy(marks, 0, tmp1, 0, size);
+      int[] tmp2 = new int[capacity];
+      System.arraycopy(ends, 0, tmp2, 0, size);
+      marks = tmp1;
+      ends = tmp2;
+    }
+    marks[size] = mark;
+    ends[size++] = length;
+  }
+
+  private void ensureChars(int len) {
+    int required = length + len;
+    if (required > chars.length) {
+      char[] tmp = new char[Math.max(required, chars.length * 2)];
+      System.arraycopy(chars, 0, tmp, 0, length);
+      chars = tmp;
+    }
+  }
+
+  private int start(int index) {
+    return index == 0 ? 0 : ends[index - 1];
+  }
+
+  private Chunk chunk(int index) {
+    Chunk mark = marks[index];
+    if (mark == null) {
+      int start = start(index);
+      return new Text(chars, start, ends[index] - start);
     } else {
-      Text text = new Text();
-      chunks.addLast(text);
-      return text;
+      return mark;
     }
   }
 
@@ -136,21 +239,30 @@ public class ChunkBuffer implements Iterable<Chunk>, Serializable, Pipe<Chunk> {
     append(element);
   }
 
+  public void provideAll(Iterable<? extends Chunk> elements) throws IOException {
+    for (Chunk element : elements) {
+      write(element);
+    }
+  }
+
   public void flush() throws IOException {
     if (out != null) {
-      for (Chunk chunk : chunks) {
-        out.provide(chunk);
-      }
+      Pipes.provideAll(out, this);
     }
-    chunks.clear();
+    clear();
     if (out != null) {
       out.flush();
     }
   }
 
   public ChunkBuffer append(ChunkBuffer s) throws NullPointerException {
-    for (Chunk chunk : s.chunks) {
-      write(chunk);
+    for (int i = 0;i < s.size;i++) {
+      Chunk mark = s.marks[i];
+      if (mark == null) {
+        append(s.chars, s.start(i), s.ends[i]);
+      } else {
+        write(mark);
+      }
     }
     if (s.next != null && !s.next.equals(Style.style())) {
       write(s.next);
@@ -189,20 +301,42 @@ public class ChunkBuffer implements Iterable<Chunk>, Serializable, Pipe<Chunk> {
   }
 
   public boolean contains(Object o) {
-    return toString().contains(o.toString());
+    String s = o.toString();
+    int len = s.length();
+    for (int i = 0;i <= length - len;i++) {
+      int j = 0;
+      while (j < len && chars[i + j] == s.charAt(j)) {
+        j++;
+      }
+      if (j == len) {
+        return true;
+      }
+    }
+    return false;
   }
 
   public boolean isEmpty() {
-    return chunks.isEmpty();
+    return size == 0;
   }
 
+  /**
+   * Clear the buffer, the allocated arrays are kept for reuse.
+   */
   public void clear() {
-    chunks.clear();
+    for (int i = 0;i < size;i++) {
+      marks[i] = null;
+    }
+    length = 0;
+    size = 0;
   }
 
   @Override
   public int hashCode() {
-    return toString().hashCode();
+    int hash = 0;
+    for (int i = 0;i < length;i++) {
+      hash = 31 * hash + chars[i];
+    }
+    return hash;
   }
 
   @Override
@@ -212,25 +346,27 @@ public class ChunkBuffer implements Iterable<Chunk>, Serializable, Pipe<Chunk> {
     }
     if (obj instanceof ChunkBuffer) {
       ChunkBuffer that = (ChunkBuffer)obj;
-      return toString().equals(that.toString());
+      if (length != that.length) {
+        return false;
+      }
+      for (int i = 0;i < length;i++) {
+        if (chars[i] != that.chars[i]) {
+          return false;
+        }
+      }
+      return true;
     }
     return false;
   }
 
   @Override
   public String toString() {
-    StringBuilder sb = new StringBuilder();
-    for (Chunk chunk : chunks) {
-      if (chunk instanceof Text) {
-        sb.append(((Text)chunk).buffer);
-      }
-    }
-    return sb.toString();
+    return new String(chars, 0, length);
   }
 
   public void writeTo(Pipe<Chunk> writer) throws IOException {
-    for (Chunk chunk : chunks) {
-      writer.provide(chunk);
+    for (int i = 0;i < size;i++) {
+      writer.provide(chunk(i));
     }
   }
 }
@@ -23,8 +23,10 @@ import org.crsh.text.ui.LabelElement;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
+import java.util.WeakHashMap;
 
 /**
  * Provide a renderable.
@@ -49,6 +51,15 @@ public abstract class Renderable<E> {
     renderables = tmp.toArray(new Renderable<?>[tmp.size()]);
   }
 
+  /** Marks a type without renderable in the resolutions. */
+  private static final Object NONE = new Object();
+
+  /**
+   * The renderable resolved per item type, including the types without renderable. The keys are weakly
+   * referenced so a class that is not used anymore can still be unloaded.
+   */
+  private static final Map<Class<?>, Object> resolutions = new WeakHashMap<Class<?>, Object>();
+
   public static Renderable<Object> ANY = new Renderable<Object>() {
     @Override
     public Class<Object> getType() {
@@ -73,16 +84,46 @@ public abstract class Renderable<E> {
   };
 
   public static <I> Renderable<? super I> getRenderable(Class<I> itemType) {
-    for (Renderable<?> formatter : renderables) {
-      if (formatter.getType().isAssignableFrom(itemType)) {
-        return (Renderable<I>)formatter;
+    Object resolution;
+    synchronized (resolutions) {
+      resolution = resolutions.get(itemType);
+    }
+    if (resolution == null) {
+      resolution = NONE;
+      for (Renderable<?> formatter : renderables) {
+        if (formatter.getType().isAssignableFrom(itemType)) {
+          resolution = formatter;
+          break;
+        }
+      }
+      synchronized (resolutions) {
+        resolutions.put(itemType, resolution);
       }
     }
-    return null;
+    return resolution == NONE ? null : (Renderable<I>)resolution;
   }
 
   public abstract Class<E> getType();
 
+  /**
+   * Returns a renderer for a stream of elements, the renderer may iterate the stream lazily when it renders.
+   *
+   * @param stream the stream
+   * @return the renderer
+   */
   public abstract Renderer renderer(Iterator<E> stream);
 
+  /**
+   * Returns a renderer for a batch of a stream of elements. The <code>previous</code> argument is the renderer
+   * returned for the previous batch of the same stream or null for the first batch, so the batch can be
+   * rendered as the continuation of the previous one. The default implementation ignores the previous batch.
+   *
+   * @param stream the batch
+   * @param previous the renderer of the previous batch
+   * @return the renderer
+   */
+  public Renderer renderer(Iterator<E> stream, Renderer previous) {
+    return renderer(stream);
+  }
+
 }
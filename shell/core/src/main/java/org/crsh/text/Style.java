@@ -22,8 +22,12 @@ package org.crsh.text;
 import org.crsh.util.Utils;
 
 import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.Writer;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.CharBuffer;
 import java.util.Arrays;
 
 public abstract class Style extends Chunk implements Serializable {
@@ -47,8 +51,16 @@ public abstract class Style extends Chunk implements Serializable {
     public void writeAnsiTo(Appendable appendable) throws IOException {
       appendable.append("\033[0m");
     }
+
+    @Override
+    public void writeAnsiTo(OutputStream out) throws IOException {
+      out.write(RESET_BYTES);
+    }
   };
 
+  /** . */
+  private static final byte[] RESET_BYTES = {27, '[', '0', 'm'};
+
   public static final class Composite extends Style {
 
     /** . */
@@ -66,12 +78,33 @@ public abstract class Style extends Chunk implements Serializable {
     /** . */
     protected final Color background;
 
+    /** The ansi sequence computed once as this style is interned. */
+    private final transient char[] ansiChars;
+
+    /** The ansi sequence encoded in US-ASCII. */
+    private final transient byte[] ansiBytes;
+
     private Composite(Boolean bold, Boolean underline, Boolean blink, Color foreground, Color background) {
       this.bold = bold;
       this.underline = underline;
       this.blink = blink;
       this.foreground = foreground;
       this.background = background;
+
+      //
+      StringBuilder sb = new StringBuilder();
+      try {
+        appendAnsiTo(sb);
+      }
+      catch (IOException e) {
+        // Should not happen
+        throw new UndeclaredThrowableException(e);
+      }
+      this.ansiChars = sb.toString().toCharArray();
+      this.ansiBytes = new byte[ansiChars.length];
+      for (int i = 0;i < ansiChars.length;i++) {
+        ansiBytes[i] = (byte)ansiChars[i];
+      }
     }
 
     public Composite fg(Color color) {
@@ -219,6 +252,34 @@ public abstract class Style extends Chunk implements Serializable {
 
     @Override
     public void writeAnsiTo(Appendable appendable) throws IOException {
+      if (ansiChars.length > 0) {
+        if (appendable instanceof Writer) {
+          ((Writer)appendable).write(ansiChars);
+        } else if (appendable instanceof StringBuilder) {
+          ((StringBuilder)appendable).append(ansiChars);
+        } else {
+          appendable.append(CharBuffer.wrap(ansiChars));
+        }
+      }
+    }
+
+    @Override
+    public void writeAnsiTo(OutputStream out) throws IOException {
+      if (ansiBytes.length > 0) {
+        out.write(ansiBytes);
+      }
+    }
+
+    @Override
+    public CharSequence toAnsiSequence() {
+      return new String(ansiChars);
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+      return style(bold, underline, blink, foreground, background);
+    }
+
+    private void appendAnsiTo(Appendable appendable) throws IOException {
       boolean appended = decoration(appendable, Decoration.bold.code, Decoration.bold_off.code, bold, false);
       appended |= decoration(appendable, Decoration.underline.code, Decoration.underline_off.code, underline, appended);
       appended |= decoration(appendable, Decoration.blink.code, Decoration.blink_off.code, blink, appended);
@@ -337,6 +398,16 @@ public abstract class Style extends Chunk implements Serializable {
 
   public abstract void writeAnsiTo(Appendable appendable) throws IOException;
 
+  /**
+   * Write the ansi sequence of this style to a stream, the sequence is encoded in US-ASCII.
+   *
+   * @param out the stream
+   * @throws IOException any io exception
+   */
+  public void writeAnsiTo(OutputStream out) throws IOException {
+    out.write(toAnsiSequence().toString().getBytes("US-ASCII"));
+  }
+
   @Override
   public abstract String toString();
 }
@@ -32,6 +32,10 @@ public class Text extends Chunk {
     this.buffer = new StringBuilder();
   }
 
+  Text(char[] chars, int offset, int len) {
+    this.buffer = new StringBuilder(len).append(chars, offset, len);
+  }
+
   private Text(CharSequence s) {
     this.buffer = new StringBuilder().append(s);
   }
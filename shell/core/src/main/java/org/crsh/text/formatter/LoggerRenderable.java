@@ -38,8 +38,11 @@ public class LoggerRenderable extends Renderable<Logger> {
     return Logger.class;
   }
 
+  /** The number of loggers sampled for the column widths. */
+  private static final int SAMPLE_SIZE = 100;
+
   @Override
-  public Renderer renderer(Iterator<Logger> stream) {
+  public Renderer renderer(final Iterator<Logger> stream) {
     TableElement table = new TableElement();
 
     // Header
@@ -49,34 +52,45 @@ public class LoggerRenderable extends Renderable<Logger> {
     header.add(new LabelElement("LEVEL"));
     table.add(header);
 
+    // The rows are created as they are rendered
+    Iterator<RowElement> rows = new Iterator<RowElement>() {
+      public boolean hasNext() {
+        return stream.hasNext();
+      }
+      public RowElement next() {
+        return row(stream.next());
+      }
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+
     //
-    while (stream.hasNext()) {
-      Logger logger = stream.next();
+    return table.renderer(rows, SAMPLE_SIZE);
+  }
 
-      // Determine level
-      String level;
-      if (logger.isLoggable(Level.FINER)) {
-        level = "TRACE";
-      } else if (logger.isLoggable(Level.FINE)) {
-        level = "DEBUG";
-      } else if (logger.isLoggable(Level.INFO)) {
-        level = "INFO";
-      } else if (logger.isLoggable(Level.WARNING)) {
-        level = "WARN";
-      }  else if (logger.isLoggable(Level.SEVERE)) {
-        level = "ERROR";
-      } else {
-        level = "UNKNOWN";
-      }
+  private RowElement row(Logger logger) {
 
-      //
-      RowElement row = new RowElement();
-      row.add(new LabelElement(logger.getName()));
-      row.add(new LabelElement(level));
-      table.add(row);
+    // Determine level
+    String level;
+    if (logger.isLoggable(Level.FINER)) {
+      level = "TRACE";
+    } else if (logger.isLoggable(Level.FINE)) {
+      level = "DEBUG";
+    } else if (logger.isLoggable(Level.INFO)) {
+      level = "INFO";
+    } else if (logger.isLoggable(Level.WARNING)) {
+      level = "WARN";
+    }  else if (logger.isLoggable(Level.SEVERE)) {
+      level = "ERROR";
+    } else {
+      level = "UNKNOWN";
     }
 
     //
-    return table.renderer();
+    RowElement row = new RowElement();
+    row.add(new LabelElement(logger.getName()));
+    row.add(new LabelElement(level));
+    return row;
   }
 }
@@ -21,9 +21,11 @@ package org.crsh.text.formatter;
 
 import org.crsh.text.Color;
 import org.crsh.text.Decoration;
+import org.crsh.text.LineReader;
 import org.crsh.text.Renderable;
 import org.crsh.text.Renderer;
 import org.crsh.text.ui.LabelElement;
+import org.crsh.text.ui.Layout;
 import org.crsh.text.ui.RowElement;
 import org.crsh.text.ui.TableElement;
 
@@ -42,11 +44,25 @@ public class MapRenderable extends Renderable<Map<?, ?>> {
 
   @Override
   public Renderer renderer(Iterator<Map<?, ?>> stream) {
+    return renderer(stream, null);
+  }
+
+  @Override
+  public Renderer renderer(Iterator<Map<?, ?>> stream, Renderer previous) {
 
     TableElement table = new TableElement();
     LinkedHashSet<String> current = new LinkedHashSet<String>();
     LinkedHashSet<String> bilto = new LinkedHashSet<String>();
 
+    // The table of the previous batch is continued with the same columns and widths
+    int[] widths = null;
+    if (previous instanceof Batch) {
+      Batch batch = (Batch)previous;
+      widths = batch.getWidths();
+      current = batch.columns;
+      table = new TableElement().rightCellPadding(1).withColumnLayout(Layout.fixed(widths));
+    }
+
     ArrayList<Renderer> renderers = new ArrayList<Renderer>();
 
     while (stream.hasNext()) {
@@ -65,6 +81,7 @@ public class MapRenderable extends Renderable<Map<?, ?>> {
           if (table.getRows().size() > 0) {
             renderers.add(table.renderer());
           }
+          widths = null;
           table = new TableElement().rightCellPadding(1);
           RowElement header = new RowElement(true);
           header.style(Decoration.bold.fg(Color.black).bg(Color.white));
@@ -91,6 +108,73 @@ public class MapRenderable extends Renderable<Map<?, ?>> {
     }
 
     //
-    return Renderer.vertical(renderers);
+    return new Batch(Renderer.vertical(renderers), current, table, widths);
+  }
+
+  /**
+   * The renderer of a batch, it retains the last table so the next batch can continue it.
+   */
+  private static class Batch extends Renderer {
+
+    /** . */
+    private final Renderer renderer;
+
+    /** The columns of the last table. */
+    private final LinkedHashSet<String> columns;
+
+    /** The last table. */
+    private final TableElement table;
+
+    /** The column widths of the last table, computed from its rows when they are not frozen yet. */
+    private int[] widths;
+
+    private Batch(Renderer renderer, LinkedHashSet<String> columns, TableElement table, int[] widths) {
+      this.renderer = renderer;
+      this.columns = columns;
+      this.table = table;
+      this.widths = widths;
+    }
+
+    private int[] getWidths() {
+      if (widths == null) {
+        widths = new int[columns.size()];
+        for (RowElement row : table.getRows()) {
+          for (int i = 0;i < row.getSize() && i < widths.length;i++) {
+            widths[i] = Math.max(widths[i], row.getCol(i).renderer().getActualWidth() + table.getRightCellPadding());
+          }
+        }
+      }
+      return widths;
+    }
+
+    @Override
+    public int getActualWidth() {
+      return renderer.getActualWidth();
+    }
+
+    @Override
+    public int getMinWidth() {
+      return renderer.getMinWidth();
+    }
+
+    @Override
+    public int getMinHeight(int width) {
+      return renderer.getMinHeight(width);
+    }
+
+    @Override
+    public int getActualHeight(int width) {
+      return renderer.getActualHeight(width);
+    }
+
+    @Override
+    public LineReader reader(int width) {
+      return renderer.reader(width);
+    }
+
+    @Override
+    public LineReader reader(int width, int height) {
+      return renderer.reader(width, height);
+    }
   }
 }
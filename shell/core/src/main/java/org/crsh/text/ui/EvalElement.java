@@ -134,8 +134,9 @@ public class EvalElement extends Element {
       public void flush() throws IOException {
         // We don't really flush, we just compute renderables from the buffer
         if (buffer.size() > 0) {
+          // The renderer may iterate the elements when it renders, so the buffer is not reused
           Renderer i = renderable.renderer(buffer.iterator());
-          buffer.clear();
+          buffer = new LinkedList<Object>();
           renderers.add(i);
         }
       }
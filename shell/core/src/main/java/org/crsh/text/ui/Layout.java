@@ -34,6 +34,10 @@ public abstract class Layout {
     return new Weighted(weights);
   }
 
+  public static Layout fixed(int... lengths) throws NullPointerException, IllegalArgumentException {
+    return new Fixed(lengths);
+  }
+
   /**
    * Computes the list of lengths for the specifid list of cells with the following constraints:
    *
@@ -159,6 +163,47 @@ public abstract class Layout {
     }
   }
 
+  public static class Fixed extends Layout {
+
+    /** The lengths. */
+    private final int[] lengths;
+
+    /**
+     * Create a new fixed layout, the cells are given the specified lengths and are discarded from the tail when
+     * they do not fit. The cells beyond the specified lengths are given their actual length.
+     *
+     * @param lengths the lengths
+     * @throws NullPointerException if the lengths argument is null
+     * @throws IllegalArgumentException if any length is negative
+     */
+    private Fixed(int... lengths) throws NullPointerException, IllegalArgumentException {
+      if (lengths == null) {
+        throw new NullPointerException("No null lengths accepted");
+      }
+      for (int length : lengths) {
+        if (length < 0) {
+          throw new IllegalArgumentException("No negative length accepted");
+        }
+      }
+      this.lengths = lengths.clone();
+    }
+
+    public int[] getLengths() {
+      return lengths.clone();
+    }
+
+    @Override
+    int[] compute(boolean spaced, int length, int[] actualLengths, int[] minLengths) {
+      int[] fixedLengths = new int[actualLengths.length];
+      int[] fixedMinLengths = new int[actualLengths.length];
+      for (int i = 0;i < actualLengths.length;i++) {
+        fixedLengths[i] = i < lengths.length ? lengths[i] : actualLengths[i];
+        fixedMinLengths[i] = Math.min(minLengths[i], fixedLengths[i]);
+      }
+      return RTL.compute(spaced, length, fixedLengths, fixedMinLengths);
+    }
+  }
+
   private static final Layout RTL = new Layout() {
 
     @Override
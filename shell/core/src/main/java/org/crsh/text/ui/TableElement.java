@@ -23,6 +23,7 @@ import org.crsh.text.Renderer;
 import org.crsh.text.Style;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 public class TableElement extends Element {
@@ -104,6 +105,30 @@ public class TableElement extends Element {
     return new TableRenderer(this);
   }
 
+  /**
+   * Returns a renderer that streams rows after the rows of this table. The column widths are computed from the rows
+   * of this table and the first <code>sampleSize</code> streamed rows, or given as hints by a
+   * {@link Layout#fixed(int...)} column layout. The other rows are rendered as they are iterated and a cell that
+   * does not fit its column follows the overflow of the table, the cells of a row wider than the sampled rows are
+   * dropped. The streamed rows are not retained: once they are rendered, the returned renderer throws an
+   * {@link IllegalStateException} when it is read again.
+   *
+   * @param rows the streamed rows
+   * @param sampleSize the number of streamed rows sampled for the column widths
+   * @return the renderer
+   * @throws NullPointerException if the rows argument is null
+   * @throws IllegalArgumentException if the sample size is negative
+   */
+  public Renderer renderer(Iterator<RowElement> rows, int sampleSize) throws NullPointerException, IllegalArgumentException {
+    if (rows == null) {
+      throw new NullPointerException("No null rows accepted");
+    }
+    if (sampleSize < 0) {
+      throw new IllegalArgumentException("No negative sample size accepted");
+    }
+    return new TableRenderer(this, rows, sampleSize);
+  }
+
   public TableElement withColumnLayout(Layout columnLayout) {
     setColumnLayout(columnLayout);
     return this;
@@ -25,6 +25,7 @@ import org.crsh.text.Renderer;
 import org.crsh.text.Style;
 
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicInteger;
 
 class TableRenderer extends Renderer {
@@ -59,7 +60,17 @@ class TableRenderer extends Renderer {
   /** . */
   private TableRowRenderer tail;
 
+  /** The rows streamed after the sampled rows or null. */
+  private Iterator<RowElement> stream;
+
+  /** True once the streamed rows are rendered, they are not retained so they cannot be rendered again. */
+  private boolean streamed;
+
   TableRenderer(TableElement table) {
+    this(table, null, 0);
+  }
+
+  TableRenderer(TableElement table, Iterator<RowElement> stream, int sampleSize) {
     this.rowLayout = table.getRowLayout();
     this.columnLayout = table.getColumnLayout();
     this.border = table.getBorder();
@@ -71,11 +82,23 @@ class TableRenderer extends Renderer {
 
     //
     for (RowElement row : table.getRows()) {
-      if (head == null) {
-        head = tail = new TableRowRenderer(this, row);
-      } else {
-        tail = tail.add(new TableRowRenderer(this, row));
+      add(row);
+    }
+
+    // Sample the streamed rows
+    if (stream != null) {
+      while (sampleSize-- > 0 && stream.hasNext()) {
+        add(stream.next());
       }
+      this.stream = stream;
+    }
+  }
+
+  private void add(RowElement row) {
+    if (head == null) {
+      head = tail = new TableRowRenderer(this, row);
+    } else {
+      tail = tail.add(new TableRowRenderer(this, row));
     }
   }
 
@@ -133,7 +156,31 @@ class TableRenderer extends Renderer {
   @Override
   public LineReader reader(final int width, final int height) {
 
+    // The streamed rows are not retained, the renderer cannot be read again once they are rendered
+    if (streamed) {
+      throw new IllegalStateException("The streamed rows of the table are already rendered");
+    }
+
+    // With a height the rows that fit are retained and the rows that cannot fit are not read
+    final Iterator<RowElement> rows;
+    if (stream != null && height > 0) {
+      while (stream.hasNext() && (tail == null || tail.getSize() < height)) {
+        add(stream.next());
+      }
+      rows = null;
+    } else {
+      rows = stream;
+      if (stream != null) {
+        stream = null;
+        streamed = true;
+      }
+    }
+
+    // The column hints give the columns that may not be sampled
     int len = getMaxColSize();
+    if (columnLayout instanceof Layout.Fixed) {
+      len = Math.max(len, ((Layout.Fixed)columnLayout).getLengths().length);
+    }
     int[] eltWidths = new int[len];
     int[] eltMinWidths = new int[len];
 
@@ -169,7 +216,7 @@ class TableRenderer extends Renderer {
       final int[] heights;
       if (height > 0) {
         // Apply vertical layout
-        int size = tail.getSize();
+        int size = tail != null ? tail.getSize() : 0;
         int[] actualHeights = new int[size];
         int[] minHeights = new int[size];
         for (TableRowRenderer row = head;row != null;row = row.next()) {
@@ -181,7 +228,7 @@ class TableRenderer extends Renderer {
           return null;
         }
       } else {
-        heights = new int[tail.getSize()];
+        heights = new int[tail != null ? tail.getSize() : 0];
         Arrays.fill(heights, -1);
       }
 
@@ -209,55 +256,47 @@ class TableRenderer extends Renderer {
           // Add all rows
           for (TableRowRenderer row = head;row != null;row = row.next()) {
             if (row.getIndex() < heights.length) {
-              int[] what;
-              if (row.getColsSize() == widths.length) {
-                what = widths;
-              } else {
-
-                // I'm not sure this algorithm is great
-                // perhaps the space should be computed or some kind of merge
-                // that respect the columns should be done
-
-                // Redistribute space among columns
-                what = new int[row.getColsSize()];
-                for (int j = 0;j < widths.length;j++) {
-                  what[j % what.length] += widths[j];
-                }
-
-                // Remove zero length columns to avoid issues
-                int end = what.length;
-                while (end > 0 && what[end - 1] == 0) {
-                  end--;
-                }
-
-                //
-                if (end != what.length) {
-                  what = Arrays.copyOf(what, end);
-                }
-              }
-              TableRowReader next = row.renderer(what, heights[row.getIndex()]);
-              if (rHead == null) {
-                rHead = rTail = next;
-              } else {
-                rTail = rTail.add(next);
-              }
+              add(row.renderer(columns(row, widths), heights[row.getIndex()]));
             } else {
               break;
             }
           }
         }
 
+        private void add(TableRowReader next) {
+          if (rHead == null) {
+            rHead = rTail = next;
+          } else {
+            rTail = rTail.add(next);
+          }
+        }
+
         public boolean hasLine() {
           switch (status) {
             case 0:
             case 2:
               return true;
             case 1:
-              while (rHead != null) {
-                if (rHead.hasLine()) {
+              while (true) {
+
+                // Read the next streamed row ahead of the last row, the separator
+                // after a header row depends on the next row
+                if (rows != null && (rHead == null || rHead == rTail) && rows.hasNext()) {
+                  TableRowRenderer row = new TableRowRenderer(TableRenderer.this, rows.next());
+                  add(row.renderer(columns(row, widths), -1));
+                }
+
+                //
+                if (rHead == null) {
+                  break;
+                } else if (rHead.hasLine()) {
                   return true;
                 } else {
                   rHead = rHead.next();
+                  if (rows != null && rHead != null) {
+                    // Let the rendered rows be collected
+                    rHead.unlink();
+                  }
                 }
               }
 
@@ -375,4 +414,33 @@ class TableRenderer extends Renderer {
       return Renderer.NULL.reader(width);
     }
   }
+
+  private static int[] columns(TableRowRenderer row, int[] widths) {
+    if (row.getColsSize() == widths.length) {
+      return widths;
+    } else {
+
+      // I'm not sure this algorithm is great
+      // perhaps the space should be computed or some kind of merge
+      // that respect the columns should be done
+
+      // Redistribute space among columns
+      int[] what = new int[row.getColsSize()];
+      for (int j = 0;j < widths.length;j++) {
+        what[j % what.length] += widths[j];
+      }
+
+      // Remove zero length columns to avoid issues
+      int end = what.length;
+      while (end > 0 && what[end - 1] == 0) {
+        end--;
+      }
+
+      //
+      if (end != what.length) {
+        what = Arrays.copyOf(what, end);
+      }
+      return what;
+    }
+  }
 }
@@ -81,6 +81,13 @@ class TableRowReader implements LineReader {
     return next;
   }
 
+  /**
+   * Unlink this reader from the previous reader so the previous rows can be collected once they are rendered.
+   */
+  void unlink() {
+    previous = null;
+  }
+
   TableRowReader previous() {
     return previous;
   }
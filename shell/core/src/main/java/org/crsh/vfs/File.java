@@ -67,6 +67,20 @@ public final class File {
 
   }
 
+  /**
+   * Returns the last modification timestamp of this file without loading its content.
+   *
+   * @return the last modification timestamp or <code>-1</code> when the file cannot be resolved
+   * @throws IOException any io exception
+   */
+  public long getLastModified() throws IOException {
+    if (path.isDir()) {
+      throw new IllegalStateException("Cannot get last modified of a dir");
+    }
+    Handle handle = getHandles().peekFirst();
+    return handle != null ? handle.getLastModified() : -1;
+  }
+
   public Iterable<Resource> getResources() throws IOException {
     if (path.isDir()) {
       throw new IllegalStateException("Cannot get url of a dir");
@@ -82,6 +96,24 @@ public final class File {
     return urls;
   }
 
+  /**
+   * Returns a checksum of this directory that changes when an entry is added to or removed from the directory,
+   * it allows to detect when the children of this directory need to be listed again.
+   *
+   * @return the directory checksum
+   * @throws IOException any io exception
+   */
+  public long checksum() throws IOException {
+    if (!path.isDir()) {
+      throw new IllegalStateException("Cannot get checksum of a file");
+    }
+    long checksum = 0;
+    for (Handle<?> handle : getHandles()) {
+      checksum = 31 * checksum + handle.checksum();
+    }
+    return checksum;
+  }
+
   public File child(String name, boolean dir) throws IOException {
     if (children == null) {
       children();
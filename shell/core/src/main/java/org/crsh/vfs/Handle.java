@@ -19,7 +19,6 @@
 
 package org.crsh.vfs;
 
-import org.crsh.util.IO;
 import org.crsh.vfs.spi.FSDriver;
 
 import java.io.IOException;
@@ -57,10 +56,13 @@ class Handle<H> {
   }
 
   Resource getResource() throws IOException {
-    InputStream in = open();
-    byte[] bytes = IO.readAsBytes(in);
     long lastModified = getLastModified();
-    return new Resource(bytes, lastModified);
+    return new Resource(lastModified, -1) {
+      @Override
+      public InputStream open() throws IOException {
+        return Handle.this.open();
+      }
+    };
   }
 
   InputStream open() throws IOException {
@@ -70,4 +72,23 @@ class Handle<H> {
   long getLastModified() throws IOException {
     return driver.getLastModified(handle);
   }
+
+  /**
+   * Returns a checksum that changes when an entry is added to or removed from this directory handle. The checksum
+   * is computed from the directory timestamp and from the names and the timestamps of the directory children, as
+   * the directory timestamp alone has a coarse resolution on some file systems and misses the close changes.
+   *
+   * @return the checksum
+   * @throws IOException any io exception
+   */
+  long checksum() throws IOException {
+    long checksum = getLastModified();
+    for (H child : driver.children(handle)) {
+      long entry = driver.name(child).hashCode();
+      entry = 31 * entry + (driver.isDir(child) ? 1 : 0);
+      entry = 31 * entry + driver.getLastModified(child);
+      checksum += entry;
+    }
+    return checksum;
+  }
 }
@@ -21,34 +21,146 @@ package org.crsh.vfs;
 
 import org.crsh.util.IO;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
 
+/**
+ * A resource provides the timestamp, the size and the content of a file. The content is not retained by the
+ * resource unless it is created from an array of bytes, instead it is read from its source each time it is
+ * opened.
+ */
 public class Resource {
 
   /** . */
   private final byte[] content;
 
   /** . */
-  private long timestamp;
+  private final URL url;
+
+  /** . */
+  private final long timestamp;
+
+  /** . */
+  private final long size;
 
   public Resource(byte[] content, long timestamp) {
+    if (content == null) {
+      throw new NullPointerException();
+    }
     this.content = content;
+    this.url = null;
     this.timestamp = timestamp;
+    this.size = content.length;
   }
 
   public Resource(URL url) throws IOException {
-    URLConnection conn = url.openConnection();
-    this.timestamp = conn.getLastModified();
-    this.content = IO.readAsBytes(conn.getInputStream());
+    if (url == null) {
+      throw new NullPointerException();
+    }
+
+    // Only the headers are needed: a file is probed directly as its connection opens the file
+    // when the headers are read, the other connections are not asked for their stream
+    File file = null;
+    if ("file".equals(url.getProtocol())) {
+      try {
+        file = new File(url.toURI());
+      }
+      catch (URISyntaxException ignore) {
+      }
+      catch (IllegalArgumentException ignore) {
+      }
+    }
+    if (file != null) {
+      if (!file.isFile()) {
+        throw new FileNotFoundException(file.getPath());
+      }
+      this.timestamp = file.lastModified();
+      this.size = file.length();
+    } else {
+      URLConnection conn = url.openConnection();
+      try {
+        this.timestamp = conn.getLastModified();
+        this.size = conn.getContentLength();
+      }
+      finally {
+        if (conn instanceof HttpURLConnection) {
+          ((HttpURLConnection)conn).disconnect();
+        }
+      }
+    }
+
+    //
+    this.content = null;
+    this.url = url;
   }
 
-  public byte[] getContent() {
-    return content;
+  /**
+   * Create a lazy resource, the subclass must override the {@link #open()} method.
+   *
+   * @param timestamp the timestamp
+   * @param size the size or <code>-1</code> when it is not known
+   */
+  protected Resource(long timestamp, long size) {
+    this.content = null;
+    this.url = null;
+    this.timestamp = timestamp;
+    this.size = size;
+  }
+
+  /**
+   * Open the content of this resource, the returned stream must be closed by the caller.
+   *
+   * @return the content stream
+   * @throws IOException any io exception
+   */
+  public InputStream open() throws IOException {
+    if (content != null) {
+      return new ByteArrayInputStream(content);
+    } else if (url != null) {
+      return url.openStream();
+    } else {
+      throw new IllegalStateException("Resource " + getClass().getName() + " does not provide its content");
+    }
+  }
+
+  /**
+   * Returns the resource content, the content is read from the resource source when it is not held
+   * by the resource. The failure to read the content is wrapped, the {@link #open()} method lets the
+   * caller handle it.
+   *
+   * @return the content
+   * @throws UndeclaredThrowableException wrapping the io exception when the content cannot be read
+   */
+  public byte[] getContent() throws UndeclaredThrowableException {
+    if (content != null) {
+      return content;
+    }
+    try {
+      return IO.readAsBytes(open());
+    }
+    catch (IOException e) {
+      throw new UndeclaredThrowableException(e);
+    }
   }
 
   public long getTimestamp() {
     return timestamp;
   }
+
+  /**
+   * Returns the resource size in bytes.
+   *
+   * @return the size or <code>-1</code> when it is not known without reading the content
+   */
+  public long getSize() {
+    return size;
+  }
 }
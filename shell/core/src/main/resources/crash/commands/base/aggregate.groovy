@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package crash.commands.base
+
+import org.crsh.cmdline.annotations.Command
+import org.crsh.cmdline.annotations.Option
+import org.crsh.cmdline.annotations.Usage
+import org.crsh.command.CRaSHCommand
+import org.crsh.command.PipeCommand
+import org.crsh.command.ScriptException
+
+@Usage("Aggregate a stream of map")
+class aggregate extends CRaSHCommand {
+
+  /** . */
+  static final int COUNT = 0;
+
+  /** . */
+  static final int SUM = 1;
+
+  /** . */
+  static final int MIN = 2;
+
+  /** . */
+  static final int MAX = 3;
+
+  /** . */
+  static final int AVG = 4;
+
+  /** . */
+  static final List<String> FUNCTIONS = ["count", "sum", "min", "max", "avg"];
+
+  /** The key of the single group when the maps are not grouped. */
+  static final Object ALL = new Object();
+
+  @Usage("Aggregate a stream of map")
+  @Command
+  PipeCommand<Map, Map> main(
+    @Usage("field used to group the maps")
+    @Option(names=['g','group']) List<String> groups,
+    @Usage("format <function>:<field> with the count, sum, min, max or avg function, the count function does not need a field")
+    @Option(names=['a','aggregate']) List<String> aggregates) {
+
+    //
+    String[] keys = groups != null ? groups.toArray(new String[groups.size()]) : new String[0];
+    List<String> specs = aggregates != null && !aggregates.empty ? aggregates : ["count"];
+    int[] functions = new int[specs.size()];
+    String[] fields = new String[specs.size()];
+    String[] names = new String[specs.size()];
+    specs.eachWithIndex { spec, i ->
+      spec = spec.trim();
+      int pos = spec.indexOf(":");
+      String function = pos == -1 ? spec : spec.substring(0, pos);
+      String field = pos == -1 ? null : spec.substring(pos + 1);
+      functions[i] = FUNCTIONS.indexOf(function);
+      if (functions[i] == -1) {
+        throw new ScriptException("Bad aggregate function " + spec);
+      } else if (functions[i] == COUNT) {
+        names[i] = field != null ? "count(" + field + ")" : "count";
+      } else if (field == null) {
+        throw new ScriptException("Missing field for aggregate function " + spec);
+      } else {
+        names[i] = function + "(" + field + ")";
+      }
+      fields[i] = field;
+    }
+
+    //
+    return new PipeCommand<Map, Map>() {
+
+      /** The groups in the order they are met. */
+      LinkedHashMap<Object, Accumulator> table = new LinkedHashMap<Object, Accumulator>();
+
+      @Override
+      void provide(Map element) {
+        Object key;
+        if (keys.length == 0) {
+          key = ALL;
+        } else if (keys.length == 1) {
+          key = element.get(keys[0]);
+        } else {
+          Object[] values = new Object[keys.length];
+          for (int i = 0;i < keys.length;i++) {
+            values[i] = element.get(keys[i]);
+          }
+          key = Arrays.asList(values);
+        }
+        Accumulator accumulator = table.get(key);
+        if (accumulator == null) {
+          table.put(key, accumulator = new Accumulator(fields.length));
+        }
+        accumulator.add(element, fields);
+      }
+
+      @Override
+      void flush() {
+        table.each { key, accumulator ->
+          LinkedHashMap row = new LinkedHashMap();
+          if (keys.length == 1) {
+            row.put(keys[0], key);
+          } else if (keys.length > 1) {
+            for (int i = 0;i < keys.length;i++) {
+              row.put(keys[i], ((List)key).get(i));
+            }
+          }
+          for (int i = 0;i < functions.length;i++) {
+            row.put(names[i], fields[i] != null ? accumulator.get(i, functions[i]) : accumulator.count);
+          }
+          context.provide(row);
+        }
+        table.clear();
+        super.flush();
+      }
+    }
+  }
+
+  /**
+   * The accumulated values of a group, the values of each field are accumulated with primitive types. The integer
+   * values are accumulated in longs as well so the integer results do not lose the precision of a double.
+   */
+  class Accumulator {
+
+    /** The number of maps. */
+    long count;
+
+    /** The number of values of each field. */
+    long[] presents;
+
+    /** The number of numeric values of each field. */
+    long[] counts;
+
+    /** . */
+    double[] sums;
+
+    /** . */
+    double[] mins;
+
+    /** . */
+    double[] maxs;
+
+    /** The sums of the fields whose values are all integers. */
+    long[] longSums;
+
+    /** . */
+    long[] longMins;
+
+    /** . */
+    long[] longMaxs;
+
+    /** True when all the values of a field are integers. */
+    boolean[] integers;
+
+    Accumulator(int size) {
+      presents = new long[size];
+      counts = new long[size];
+      sums = new double[size];
+      mins = new double[size];
+      maxs = new double[size];
+      longSums = new long[size];
+      longMins = new long[size];
+      longMaxs = new long[size];
+      integers = new boolean[size];
+      Arrays.fill(integers, true);
+    }
+
+    void add(Map element, String[] fields) {
+      count++;
+      for (int i = 0;i < fields.length;i++) {
+        if (fields[i] != null) {
+          Object value = element.get(fields[i]);
+          if (value != null) {
+            presents[i]++;
+            accumulate(i, value);
+          }
+        }
+      }
+    }
+
+    void accumulate(int i, Object value) {
+      double d;
+      long l = 0;
+      boolean integer;
+      if (value instanceof Number) {
+        Number n = (Number)value;
+        d = n.doubleValue();
+        integer = value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+        if (integer) {
+          l = n.longValue();
+        }
+      } else {
+        String s = value.toString().trim();
+        try {
+          l = Long.parseLong(s);
+          d = l;
+          integer = true;
+        }
+        catch (NumberFormatException e) {
+          try {
+            d = Double.parseDouble(s);
+            integer = false;
+          }
+          catch (NumberFormatException ignore) {
+            // Not a number
+            return;
+          }
+        }
+      }
+      boolean first = counts[i]++ == 0;
+      if (first) {
+        mins[i] = d;
+        maxs[i] = d;
+      } else {
+        if (d < mins[i]) {
+          mins[i] = d;
+        }
+        if (d > maxs[i]) {
+          maxs[i] = d;
+        }
+      }
+      sums[i] += d;
+      if (!integer) {
+        integers[i] = false;
+      } else if (integers[i]) {
+        if (first) {
+          longMins[i] = l;
+          longMaxs[i] = l;
+        } else {
+          if (l < longMins[i]) {
+            longMins[i] = l;
+          }
+          if (l > longMaxs[i]) {
+            longMaxs[i] = l;
+          }
+        }
+        longSums[i] += l;
+      }
+    }
+
+    Object get(int i, int function) {
+      switch (function) {
+        case COUNT:
+          return presents[i];
+        case SUM:
+          return value(i, sums[i], longSums[i]);
+        case MIN:
+          return value(i, mins[i], longMins[i]);
+        case MAX:
+          return value(i, maxs[i], longMaxs[i]);
+        default:
+          if (counts[i] == 0) {
+            return null;
+          } else if (integers[i]) {
+            return (double)longSums[i] / counts[i];
+          } else {
+            return sums[i] / counts[i];
+          }
+      }
+    }
+
+    Object value(int i, double d, long l) {
+      if (counts[i] == 0) {
+        return null;
+      } else if (integers[i]) {
+        return l;
+      } else {
+        return d;
+      }
+    }
+  }
+}
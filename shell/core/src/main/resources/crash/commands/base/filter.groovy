@@ -26,6 +26,7 @@ import org.crsh.cmdline.annotations.Command
 import org.crsh.command.PipeCommand
 import org.crsh.cmdline.annotations.Option
 import java.util.regex.Pattern
+import org.crsh.io.Selection
 import org.crsh.util.Utils
 
 @Usage("A filter for a stream of map")
@@ -77,20 +78,46 @@ class filter extends CRaSHCommand {
     }
 
     //
-    return new PipeCommand<Map, Map>() {
-      @Override
-      void provide(Map element) {
-        for (int i = 0;i < keys.length;i++) {
-          Object value = element[keys[i]];
-          if (value != null) {
-            def chars = value instanceof CharSequence ? value : value.toString();;
-            if (!values[i].matcher(chars).matches()) {
-              return;
-            }
+    return new FilterPipe(keys, values);
+  }
+
+  /**
+   * The filter pipe exposes its patterns as a selection, the producer of the maps can use it to skip
+   * the maps that would be discarded.
+   */
+  class FilterPipe extends PipeCommand<Map, Map> implements Selection {
+
+    String[] keys;
+    Pattern[] values;
+
+    FilterPipe(String[] keys, Pattern[] values) {
+      this.keys = keys;
+      this.values = values;
+    }
+
+    Map<String, Pattern> getSelection() {
+      if (keys.length == 0) {
+        return null;
+      }
+      Map<String, Pattern> selection = new LinkedHashMap<String, Pattern>();
+      for (int i = 0;i < keys.length;i++) {
+        selection.put(keys[i], values[i]);
+      }
+      return selection;
+    }
+
+    @Override
+    void provide(Map element) {
+      for (int i = 0;i < keys.length;i++) {
+        Object value = element[keys[i]];
+        if (value != null) {
+          def chars = value instanceof CharSequence ? value : value.toString();;
+          if (!values[i].matcher(chars).matches()) {
+            return;
           }
         }
-        context.provide(element);
       }
+      context.provide(element);
     }
   }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package crash.commands.base
+
+import org.crsh.cmdline.annotations.Argument
+import org.crsh.cmdline.annotations.Command
+import org.crsh.cmdline.annotations.Option
+import org.crsh.cmdline.annotations.Usage
+import org.crsh.command.CRaSHCommand
+import org.crsh.command.PipeCommand
+import org.crsh.command.ScriptException
+import org.crsh.io.ConsumerStatus
+import org.crsh.io.Pipes
+
+@Usage("Provide the first elements of a stream")
+class head extends CRaSHCommand {
+
+  /** The default number of provided elements. */
+  static final int DEFAULT_COUNT = 10;
+
+  @Usage("Provide the first elements of a stream")
+  @Command
+  PipeCommand<Object, Object> main(
+      @Usage("The number of provided elements, 10 by default")
+      @Option(names = ['n', 'lines']) Integer lines,
+      @Usage("The number of provided elements when the lines option is not set")
+      @Argument Integer count) {
+    int limit = lines != null ? lines : (count != null ? count : DEFAULT_COUNT);
+    if (limit < 0) {
+      throw new ScriptException("Invalid count " + limit);
+    }
+    return new HeadPipe(limit);
+  }
+
+  /**
+   * The head pipe is done once it has provided enough elements, the previous commands should check
+   * it with {@link Pipes#isDone(Object)} and stop producing.
+   */
+  class HeadPipe extends PipeCommand<Object, Object> implements ConsumerStatus {
+
+    int limit;
+
+    /** The number of provided elements, it is read by the previous stage thread in a concurrent pipeline. */
+    private volatile int count = 0;
+
+    HeadPipe(int limit) {
+      this.limit = limit;
+    }
+
+    boolean isDone() {
+      return count >= limit || Pipes.isDone(context);
+    }
+
+    @Override
+    void provide(Object element) {
+      if (count < limit) {
+        count++;
+        context.provide(element);
+      }
+    }
+
+    @Override
+    void provideAll(Iterable<?> elements) {
+      List<Object> provided = new ArrayList<Object>();
+      for (Object element : elements) {
+        if (count + provided.size() >= limit) {
+          break;
+        }
+        provided.add(element);
+      }
+      if (provided.size() > 0) {
+        count += provided.size();
+        Pipes.provideAll(context, provided);
+      }
+    }
+  }
+}
@@ -33,6 +33,7 @@ import org.crsh.command.ScriptException
 import org.crsh.cmdline.annotations.Option
 import java.lang.reflect.InvocationTargetException
 import org.crsh.command.InvocationContext
+import org.crsh.io.Pipes
 import org.crsh.util.Safe
 import java.sql.DatabaseMetaData
 import org.crsh.text.ui.UIBuilder
@@ -48,6 +49,9 @@ import org.crsh.util.JNDIHandler;
 @Usage("JDBC connection")
 class jdbc extends CRaSHCommand implements Completer{
 
+  /** The number of rows provided at once by the select command. */
+  static final int BATCH_SIZE = 100;
+
   Completer c = new JNDIHandler.JNDICompleter("javax.sql.DataSource");
   
   @Usage("connect to database with a JDBC connection string")
@@ -173,10 +177,20 @@ class jdbc extends CRaSHCommand implements Completer{
           if (resultSet != null) {
             ResultSetMetaData metaData = resultSet.getMetaData();
             int columnCount = resultSet.getMetaData().getColumnCount()
-            while (resultSet.next()) {
+
+            // Rows are provided by batches until the consumer does not need more rows
+            List<Map> rows = new ArrayList<Map>(BATCH_SIZE);
+            while (!Pipes.isDone(context) && resultSet.next()) {
               LinkedHashMap row = new LinkedHashMap();
               (1..columnCount).each{ row[metaData.getColumnName(it)] = resultSet.getString(it) }
-              context.provide(row)
+              rows.add(row);
+              if (rows.size() == BATCH_SIZE) {
+                Pipes.provideAll(context, rows)
+                rows.clear();
+              }
+            }
+            if (rows.size() > 0) {
+              Pipes.provideAll(context, rows)
             }
             out << "Query executed successfully\n";
           }
@@ -20,6 +20,7 @@ import org.crsh.command.InvocationContext
 import org.crsh.cmdline.completers.EnumCompleter
 import org.crsh.cmdline.spi.Completion
 import org.crsh.command.PipeCommand;
+import org.crsh.io.Pipes;
 
 @Usage("logging commands")
 public class log extends CRaSHCommand {
@@ -113,10 +114,13 @@ The logls command is a <Void,Logger> command, therefore any logger produced can
     def pattern = Pattern.compile(filter ?: ".*");
 
     //
-    loggers.each {
-       def matcher = it =~ pattern;
+    for (String name : loggers) {
+       if (Pipes.isDone(context)) {
+         break;
+       }
+       def matcher = name =~ pattern;
        if (matcher.matches()) {
-         def logger = Logger.getLogger(it);
+         def logger = Logger.getLogger(name);
          context.provide(logger);
        }
     }
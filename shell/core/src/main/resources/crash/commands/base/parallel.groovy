@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package crash.commands.base
+
+import org.crsh.cmdline.annotations.Argument
+import org.crsh.cmdline.annotations.Command
+import org.crsh.cmdline.annotations.Option
+import org.crsh.cmdline.annotations.Usage
+import org.crsh.command.CRaSHCommand
+import org.crsh.command.CommandInvoker
+import org.crsh.command.ScriptException
+import org.crsh.shell.impl.command.PipeLineFactory
+
+@Usage("Invoke a command concurrently on the consumed elements")
+class parallel extends CRaSHCommand {
+
+  /**
+   * The command line is parsed by the pipeline factory, the options of the invoked command are not options
+   * of this command.
+   */
+  @Override
+  CommandInvoker<?, ?> resolveInvoker(String line) {
+    String trimmed = line.trim();
+    if (trimmed == "-h" || trimmed == "--help") {
+      return super.resolveInvoker(line);
+    }
+    return PipeLineFactory.createParallel(line);
+  }
+
+  /**
+   * Describes the command line, the command is invoked from a pipeline with {@link #resolveInvoker(String)}.
+   */
+  @Usage("Invoke a command concurrently on the consumed elements")
+  @Command
+  void main(
+      @Usage("The number of threads, the number of processors by default")
+      @Option(names = ['n', 'threads']) Integer threads,
+      @Usage("Emit the produced elements as soon as they are available instead of the consumption order")
+      @Option(names = ['u', 'unordered']) Boolean unordered,
+      @Usage("The invoked command line")
+      @Argument List<String> command) {
+    throw new ScriptException("The parallel command can only be invoked from a pipeline");
+  }
+}
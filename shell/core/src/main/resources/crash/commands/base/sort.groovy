@@ -24,31 +24,289 @@ import org.crsh.cmdline.annotations.Option
 import org.crsh.cmdline.annotations.Usage
 import org.crsh.command.CRaSHCommand
 import org.crsh.command.PipeCommand
+import org.crsh.command.ScriptException
+import org.crsh.util.Safe
 
 class sort extends CRaSHCommand {
 
+  /** The default maximum number of elements sorted in memory. */
+  static final int DEFAULT_BUFFER_SIZE = 10000;
+
+  /** The number of elements written before the object stream is reset. */
+  static final int RESET_SIZE = 100;
+
   @Usage("Sort a map")
   @Command
   PipeCommand<Map, Map> main(
       @Usage("Filed used to sort")
-      @Option(names = ['f', 'fields']) List<String> fields) {
+      @Option(names = ['f', 'fields']) List<String> fields,
+      @Usage("The maximum number of elements sorted in memory, sorted runs are written to temporary files beyond")
+      @Option(names = ['b', 'buffer']) Integer buffer,
+      @Usage("Keep only the first elements of the sort")
+      @Option(names = ['n', 'limit']) Integer limit) {
+    int bufferSize = buffer != null ? buffer : DEFAULT_BUFFER_SIZE;
+    if (bufferSize < 1) {
+      throw new ScriptException("Invalid buffer size " + bufferSize);
+    }
+    if (limit != null && limit < 0) {
+      throw new ScriptException("Invalid limit " + limit);
+    }
+    EntryComparator comparator = new EntryComparator(fields);
+    if (limit != null) {
+      return top(comparator, limit);
+    }
     return new PipeCommand<Map, Map>() {
       List<Map> d = new ArrayList<Map>();
+      List<File> runs = new ArrayList<File>();
+      boolean spill = true;
 
       @Override
       void provide(Map element) {
         d.add(element);
+        if (spill && d.size() >= bufferSize) {
+          Collections.sort(d, comparator);
+          File run = write(d);
+          if (run != null) {
+            runs.add(run);
+            d.clear();
+          } else {
+            // The elements cannot be serialized, they are kept in memory
+            spill = false;
+          }
+        }
       }
 
       @Override
       void flush() {
-        Collections.sort(d, new EntryComparator(fields))
-        d.each { m ->
-          context.provide(m);
+        try {
+          Collections.sort(d, comparator)
+          if (runs.empty) {
+            d.each { m ->
+              context.provide(m);
+            }
+          } else {
+            merge(runs, d, comparator, context);
+          }
+        }
+        finally {
+          d.clear();
+          delete(runs);
+          spill = true;
         }
-        d.clear();
         super.flush();
       }
+
+      @Override
+      void close() {
+        delete(runs);
+      }
+    }
+  }
+
+  /**
+   * Keeps the first elements in a bounded heap whose head is the last kept element, the elements that
+   * are equal are kept in the order they are provided.
+   */
+  PipeCommand<Map, Map> top(EntryComparator comparator, int limit) {
+    SequenceComparator order = new SequenceComparator(comparator);
+    return new TopPipe(order, limit, Math.max(1, Math.min(limit, DEFAULT_BUFFER_SIZE)));
+  }
+
+  class TopPipe extends PipeCommand<Map, Map> {
+
+    SequenceComparator order;
+    int limit;
+    PriorityQueue<Sequenced> heap;
+    long count = 0;
+
+    TopPipe(SequenceComparator order, int limit, int capacity) {
+      this.order = order;
+      this.limit = limit;
+      this.heap = new PriorityQueue<Sequenced>(capacity, Collections.reverseOrder(order));
+    }
+
+    @Override
+    void provide(Map element) {
+      Sequenced sequenced = new Sequenced(element, count++);
+      if (heap.size() < limit) {
+        heap.add(sequenced);
+      } else if (limit > 0 && order.compare(sequenced, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(sequenced);
+      }
+    }
+
+    @Override
+    void flush() {
+      List<Sequenced> d = new ArrayList<Sequenced>(heap);
+      heap.clear();
+      Collections.sort(d, order);
+      d.each { sequenced ->
+        context.provide(sequenced.value);
+      }
+      super.flush();
+    }
+  }
+
+  /**
+   * Write a sorted run to a temporary file, null is returned when an element cannot be serialized.
+   */
+  File write(List<Map> run) {
+    File file = File.createTempFile("crash-sort", ".run");
+
+    // Backstop for the runs that are not deleted because the pipeline was not closed
+    file.deleteOnExit();
+    ObjectOutputStream out = null;
+    boolean written = false;
+    try {
+      out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      out.writeInt(run.size());
+      int count = 0;
+      for (Map m : run) {
+        out.writeObject(m);
+        if (++count % RESET_SIZE == 0) {
+          // Release the references to the written elements
+          out.reset();
+        }
+      }
+      out.close();
+      written = true;
+    }
+    catch (NotSerializableException ignore) {
+      // The run is kept in memory
+    }
+    finally {
+      Safe.close(out);
+      if (!written) {
+        file.delete();
+      }
+    }
+    return written ? file : null;
+  }
+
+  void delete(List<File> runs) {
+    runs.each { file ->
+      file.delete();
+    }
+    runs.clear();
+  }
+
+  /**
+   * Merge the sorted runs, the equal elements are emitted in the order of their runs which preserves the
+   * stability of the sort.
+   */
+  void merge(List<File> runs, List<Map> last, Comparator<Map> comparator, def context) {
+    List<Cursor> cursors = new ArrayList<Cursor>();
+    try {
+      runs.each { file ->
+        cursors.add(new Cursor(cursors.size(), new RunIterator(file)));
+      }
+      cursors.add(new Cursor(cursors.size(), last.iterator()));
+      PriorityQueue<Cursor> queue = new PriorityQueue<Cursor>(cursors.size(), new CursorComparator(comparator));
+      cursors.each { cursor ->
+        if (cursor.next()) {
+          queue.add(cursor);
+        }
+      }
+      while (!queue.isEmpty()) {
+        Cursor cursor = queue.poll();
+        context.provide(cursor.head);
+        if (cursor.next()) {
+          queue.add(cursor);
+        }
+      }
+    }
+    finally {
+      cursors.each { cursor ->
+        if (cursor.iterator instanceof RunIterator) {
+          Safe.close(cursor.iterator.input);
+        }
+      }
+    }
+  }
+
+  class Sequenced {
+
+    Map value;
+    long sequence;
+
+    Sequenced(Map value, long sequence) {
+      this.value = value;
+      this.sequence = sequence;
+    }
+  }
+
+  class SequenceComparator implements Comparator<Sequenced> {
+
+    Comparator<Map> comparator;
+
+    SequenceComparator(Comparator<Map> comparator) {
+      this.comparator = comparator;
+    }
+
+    int compare(Sequenced o1, Sequenced o2) {
+      int r = comparator.compare(o1.value, o2.value);
+      return r != 0 ? r : (o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1));
+    }
+  }
+
+  class Cursor {
+
+    int index;
+    Iterator<Map> iterator;
+    Map head;
+
+    Cursor(int index, Iterator<Map> iterator) {
+      this.index = index;
+      this.iterator = iterator;
+    }
+
+    boolean next() {
+      if (iterator.hasNext()) {
+        head = iterator.next();
+        return true;
+      } else {
+        head = null;
+        return false;
+      }
+    }
+  }
+
+  class CursorComparator implements Comparator<Cursor> {
+
+    Comparator<Map> comparator;
+
+    CursorComparator(Comparator<Map> comparator) {
+      this.comparator = comparator;
+    }
+
+    int compare(Cursor o1, Cursor o2) {
+      int r = comparator.compare(o1.head, o2.head);
+      return r != 0 ? r : o1.index - o2.index;
+    }
+  }
+
+  class RunIterator implements Iterator<Map> {
+
+    ObjectInputStream input;
+    int remaining;
+
+    RunIterator(File file) {
+      input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+      remaining = input.readInt();
+    }
+
+    boolean hasNext() {
+      return remaining > 0;
+    }
+
+    Map next() {
+      remaining--;
+      return (Map)input.readObject();
+    }
+
+    void remove() {
+      throw new UnsupportedOperationException();
     }
   }
 
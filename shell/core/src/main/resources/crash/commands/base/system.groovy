@@ -4,6 +4,7 @@ import org.crsh.command.CRaSHCommand
 import org.crsh.cmdline.annotations.Usage
 import org.crsh.cmdline.annotations.Command
 import org.crsh.command.InvocationContext
+import org.crsh.io.Pipes
 import java.lang.annotation.Retention
 import java.lang.annotation.RetentionPolicy
 import org.crsh.cmdline.annotations.Man
@@ -34,9 +35,16 @@ class system extends CRaSHCommand implements Completer {
     @Option(names=["f","filter"])
     String filter) {
     def pattern = Pattern.compile(filter?:".*");
+
+    // Skip the properties discarded by the consumer before creating their map
+    Map<String, Pattern> selection = Pipes.getSelection(context);
+    Pattern namePattern = selection?.get("NAME");
+    Pattern valuePattern = selection?.get("VALUE");
+
+    //
     System.getProperties().each { key, value ->
       def matcher = key =~ pattern;
-      if (matcher.matches()) {
+      if (matcher.matches() && matches(namePattern, key) && matches(valuePattern, value)) {
         try {
           context.provide([NAME: key, VALUE: value] as LinkedHashMap)
         }
@@ -47,6 +55,10 @@ class system extends CRaSHCommand implements Completer {
     }
   }
 
+  boolean matches(Pattern pattern, Object value) {
+    return pattern == null || value == null || pattern.matcher(value.toString()).matches();
+  }
+
   @Usage("set a system property")
   @Command
   public void propset(@PropertyName @Required String name, @PropertyValue @Required String value) {
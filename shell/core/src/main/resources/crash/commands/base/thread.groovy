@@ -8,6 +8,7 @@ import org.crsh.cmdline.annotations.Man
 import org.crsh.cmdline.annotations.Argument
 
 import org.crsh.command.PipeCommand
+import org.crsh.io.Pipes
 import org.crsh.text.ui.UIBuilder
 import org.crsh.util.Utils
 
@@ -138,21 +139,25 @@ public class thread extends CRaSHCommand {
 
     //
     Map<String, Thread> threads = getThreads();
+    List<Thread> matched = new ArrayList<Thread>();
     threads.each() {
       if (it != null) {
         def nameMatcher = it.value.name =~ namePattern;
         def groupMatcher = it.value.threadGroup.name =~ groupPattern;
         def thread = it.value;
         if (nameMatcher.matches() && groupMatcher.matches() && (state == null || it.value.state == state)) {
-          try {
-            context.provide(thread)
-          }
-          catch (IOException e) {
-            e.printStackTrace()
-          };
+          matched.add(thread);
         }
       }
     }
+
+    // Provide the threads as a single batch
+    try {
+      Pipes.provideAll(context, matched)
+    }
+    catch (IOException e) {
+      e.printStackTrace()
+    };
   }
     
   @Usage("interrupt vm threads")
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.plugin;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+public class CommandIndexTestCase extends TestCase {
+
+  public void testEmpty() {
+    assertEquals(Collections.<String>emptyList(), CommandIndex.EMPTY.getNames());
+    assertEquals(Collections.<String>emptyList(), CommandIndex.EMPTY.complete(""));
+    assertEquals(Collections.<String>emptyList(), CommandIndex.EMPTY.complete("a"));
+  }
+
+  public void testComplete() {
+    CommandIndex index = new CommandIndex(new TreeSet<String>(Arrays.asList("jdbc", "jmx", "jndi", "jpa", "java", "thread", "j")));
+    assertEquals(Arrays.asList("j", "java", "jdbc", "jmx", "jndi", "jpa", "thread"), index.getNames());
+    assertEquals(Arrays.asList("j", "java", "jdbc", "jmx", "jndi", "jpa", "thread"), index.complete(""));
+    assertEquals(Arrays.asList("j", "java", "jdbc", "jmx", "jndi", "jpa"), index.complete("j"));
+    assertEquals(Arrays.asList("jdbc"), index.complete("jd"));
+    assertEquals(Arrays.asList("jdbc"), index.complete("jdbc"));
+    assertEquals(Collections.<String>emptyList(), index.complete("jdbcc"));
+    assertEquals(Collections.<String>emptyList(), index.complete("x"));
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell;
+
+import org.crsh.command.ScriptException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.crsh.util.Utils.*;
+
+public class AggregateCommandTestCase extends AbstractCommandTestCase {
+
+  public static List<Map> output = new ArrayList<Map>();
+
+  private final String consume_command = "class consume_command extends org.crsh.command.CRaSHCommand {\n" +
+      "@Command\n" +
+      "public org.crsh.command.PipeCommand<java.util.Map, Object> main() {\n" +
+      "return new org.crsh.command.PipeCommand<java.util.Map, Object>() {\n" +
+      "public void provide(java.util.Map element) {\n" +
+      "org.crsh.shell.AggregateCommandTestCase.output.add(element)\n" +
+      "}\n" +
+      "}\n" +
+      "}\n" +
+      "}";
+
+  private final String produce_command = "class produce_command extends org.crsh.command.CRaSHCommand {\n" +
+      "@Command\n" +
+      "public void main(org.crsh.command.InvocationContext<java.util.Map> context) {\n" +
+      "context.provide([A:'a',B:'x',C:1]);\n" +
+      "context.provide([A:'b',B:'x',C:'2']);\n" +
+      "context.provide([A:'a',B:'y',C:3]);\n" +
+      "context.provide([A:'a',B:'x',C:'foo']);\n" +
+      "context.provide([A:'b',B:'y',C:2.5d]);\n" +
+      "}\n" +
+      "}";
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    //
+    output.clear();
+    lifeCycle.bind("consume_command", consume_command);
+    lifeCycle.bind("produce_command", produce_command);
+  }
+
+  public void testCount() throws Exception {
+    assertOk("produce_command | aggregate | consume_command");
+    assertEquals(list(row("count", 5L)), output);
+  }
+
+  public void testGroup() throws Exception {
+    assertOk("produce_command | aggregate -g A | consume_command");
+    assertEquals(list(row("A", "a", "count", 3L), row("A", "b", "count", 2L)), output);
+  }
+
+  public void testGroups() throws Exception {
+    assertOk("produce_command | aggregate -g A -g B -a sum:C | consume_command");
+    assertEquals(4, output.size());
+    assertEquals(row("A", "a", "B", "x", "sum(C)", 1L), output.get(0));
+    assertEquals(row("A", "b", "B", "x", "sum(C)", 2L), output.get(1));
+    assertEquals(row("A", "a", "B", "y", "sum(C)", 3L), output.get(2));
+    assertEquals(row("A", "b", "B", "y", "sum(C)", 2.5d), output.get(3));
+  }
+
+  public void testFunctions() throws Exception {
+    assertOk("produce_command | aggregate -g A -a count:C -a sum:C -a min:C -a max:C -a avg:C | consume_command");
+    assertEquals(2, output.size());
+    Map a = output.get(0);
+    assertEquals("a", a.get("A"));
+    assertEquals(3L, a.get("count(C)"));
+    assertEquals(4L, a.get("sum(C)"));
+    assertEquals(1L, a.get("min(C)"));
+    assertEquals(3L, a.get("max(C)"));
+    assertEquals(2d, a.get("avg(C)"));
+    Map b = output.get(1);
+    assertEquals("b", b.get("A"));
+    assertEquals(2L, b.get("count(C)"));
+    assertEquals(4.5d, b.get("sum(C)"));
+    assertEquals(2d, b.get("min(C)"));
+    assertEquals(2.5d, b.get("max(C)"));
+    assertEquals(2.25d, b.get("avg(C)"));
+  }
+
+  private static Map<String, Object> row(Object... entries) {
+    Map<String, Object> row = new HashMap<String, Object>();
+    for (int i = 0;i < entries.length;i += 2) {
+      row.put((String)entries[i], entries[i + 1]);
+    }
+    return row;
+  }
+
+  public void testLargeIntegers() throws Exception {
+    String produce_large = "class produce_large extends org.crsh.command.CRaSHCommand {\n" +
+        "@Command\n" +
+        "public void main(org.crsh.command.InvocationContext<java.util.Map> context) {\n" +
+        "context.provide([C:9007199254740993L]);\n" +
+        "context.provide([C:'9007199254740995']);\n" +
+        "}\n" +
+        "}";
+    lifeCycle.bind("produce_large", produce_large);
+    assertOk("produce_large | aggregate -a sum:C -a min:C -a max:C | consume_command");
+    assertEquals(list(row("sum(C)", 18014398509481988L, "min(C)", 9007199254740993L, "max(C)", 9007199254740995L)), output);
+  }
+
+  public void testInvalid() throws Exception {
+    assertError("produce_command | aggregate -a foo:C | consume_command", ErrorType.EVALUATION, ScriptException.class);
+    assertError("produce_command | aggregate -a sum | consume_command", ErrorType.EVALUATION, ScriptException.class);
+  }
+}
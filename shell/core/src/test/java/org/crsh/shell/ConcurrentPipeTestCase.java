@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.shell;
+
+import org.crsh.command.ScriptException;
+import org.crsh.shell.impl.command.PipeLineFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ConcurrentPipeTestCase extends AbstractCommandTestCase {
+
+  /** . */
+  public static volatile int provided;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    // Small queues so the producers are blocked
+    shell.put(PipeLineFactory.QUEUE_SIZE_ATTRIBUTE, 2);
+  }
+
+  public void testOrder() throws Exception {
+    String producer =
+        "class producer extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public void main(org.crsh.command.InvocationContext<Integer> context) {\n" +
+        "    for (int i = 0;i < 1000;i++) {\n" +
+        "      context.provide(i);\n" +
+        "    }\n" +
+        "  }\n" +
+        "}";
+    String twice =
+        "class twice extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public org.crsh.command.PipeCommand<Integer, Integer> main() {\n" +
+        "    return new org.crsh.command.PipeCommand<Integer, Integer>() {\n" +
+        "      public void provide(Integer element) {\n" +
+        "        context.provide(element * 2);\n" +
+        "      }\n" +
+        "    };\n" +
+        "  }\n" +
+        "}";
+    lifeCycle.bind("producer", producer);
+    lifeCycle.bind("twice", twice);
+    lifeCycle.bind("consumer", Commands.ConsumeInteger.class);
+
+    //
+    Commands.list.clear();
+    assertOk("producer | twice | consumer");
+    List<Object> expected = new ArrayList<Object>();
+    for (int i = 0;i < 1000;i++) {
+      expected.add(i * 2);
+    }
+    assertEquals(expected, Commands.list);
+  }
+
+  public void testFlushAndClose() throws Exception {
+    String producer =
+        "class producer extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public void main(org.crsh.command.InvocationContext<String> context) {\n" +
+        "    context.provide('a');\n" +
+        "    context.flush();\n" +
+        "    context.provide('b');\n" +
+        "  }\n" +
+        "}";
+    String consumer =
+        "class consumer extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public org.crsh.command.PipeCommand<String, Object> main() {\n" +
+        "    return new org.crsh.command.PipeCommand<String, Object>() {\n" +
+        "      public void provide(String element) {\n" +
+        "        org.crsh.shell.Commands.list.add(element);\n" +
+        "      }\n" +
+        "      public void flush() {\n" +
+        "        org.crsh.shell.Commands.list.add('flush');\n" +
+        "      }\n" +
+        "      public void close() {\n" +
+        "        org.crsh.shell.Commands.list.add('close');\n" +
+        "      }\n" +
+        "    };\n" +
+        "  }\n" +
+        "}";
+    lifeCycle.bind("producer", producer);
+    lifeCycle.bind("consumer", consumer);
+
+    //
+    Commands.list.clear();
+    assertOk("producer | consumer");
+    assertEquals(Arrays.asList("a", "flush", "b", "flush", "close"), Commands.list);
+  }
+
+  public void testConsumerThrowsScriptException() throws Exception {
+    String consumer =
+        "class consumer extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public org.crsh.command.PipeCommand<Integer, Object> main() {\n" +
+        "    return new org.crsh.command.PipeCommand<Integer, Object>() {\n" +
+        "      public void provide(Integer element) {\n" +
+        "        throw new org.crsh.command.ScriptException('foo')\n" +
+        "      }\n" +
+        "    };\n" +
+        "  }\n" +
+        "}\n";
+    lifeCycle.bind("producer", Commands.ProduceInteger.class);
+    lifeCycle.bind("consumer", consumer);
+    Throwable t = assertError("producer | consumer", ErrorType.EVALUATION);
+    ScriptException ex = assertInstance(ScriptException.class, t);
+    assertEquals("foo", ex.getMessage());
+  }
+
+  public void testSynchronous() throws Exception {
+    shell.put(PipeLineFactory.QUEUE_SIZE_ATTRIBUTE, 0);
+    lifeCycle.bind("producer", Commands.ProduceInteger.class);
+    lifeCycle.bind("consumer", Commands.ConsumeInteger.class);
+    Commands.list.clear();
+    assertOk("producer | consumer");
+    assertEquals(Arrays.<Object>asList(3), Commands.list);
+  }
+
+  public void testProvideAll() throws Exception {
+    String producer =
+        "class producer extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public void main(org.crsh.command.InvocationContext<Integer> context) {\n" +
+        "    context.provideAll([1, 'foo', 2]);\n" +
+        "  }\n" +
+        "}";
+    lifeCycle.bind("producer", producer);
+    lifeCycle.bind("consumer", Commands.ConsumeInteger.class);
+    Commands.list.clear();
+    assertOk("producer | consumer");
+    assertEquals(Arrays.<Object>asList(1, 2), Commands.list);
+  }
+
+  public void testConsumerFailureStopsProducer() throws Exception {
+    String producer =
+        "class producer extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public void main(org.crsh.command.InvocationContext<Integer> context) {\n" +
+        "    for (int i = 0;i < 100000;i++) {\n" +
+        "      org.crsh.shell.ConcurrentPipeTestCase.provided = i;\n" +
+        "      context.provide(i);\n" +
+        "    }\n" +
+        "  }\n" +
+        "}";
+    String consumer =
+        "class consumer extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public org.crsh.command.PipeCommand<Integer, Object> main() {\n" +
+        "    return new org.crsh.command.PipeCommand<Integer, Object>() {\n" +
+        "      public void provide(Integer element) {\n" +
+        "        throw new org.crsh.command.ScriptException('foo')\n" +
+        "      }\n" +
+        "      public void close() {\n" +
+        "        org.crsh.shell.Commands.list.add('close');\n" +
+        "      }\n" +
+        "    };\n" +
+        "  }\n" +
+        "}\n";
+    lifeCycle.bind("producer", producer);
+    lifeCycle.bind("consumer", consumer);
+    Commands.list.clear();
+    provided = 0;
+    Throwable t = assertError("producer | consumer", ErrorType.EVALUATION);
+    ScriptException ex = assertInstance(ScriptException.class, t);
+    assertEquals("foo", ex.getMessage());
+    assertTrue("Was expecting the producer to stop instead of providing " + provided + " elements", provided < 100);
+    assertEquals(Arrays.<Object>asList("close"), Commands.list);
+  }
+
+  public void testProducerFailureClosesStages() throws Exception {
+    String producer =
+        "class producer extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public void main(org.crsh.command.InvocationContext<Integer> context) {\n" +
+        "    context.provide(1);\n" +
+        "    throw new org.crsh.command.ScriptException('foo')\n" +
+        "  }\n" +
+        "}";
+    String consumer =
+        "class consumer extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public org.crsh.command.PipeCommand<Integer, Object> main() {\n" +
+        "    return new org.crsh.command.PipeCommand<Integer, Object>() {\n" +
+        "      public void provide(Integer element) {\n" +
+        "        Thread.sleep(100000);\n" +
+        "      }\n" +
+        "      public void close() {\n" +
+        "        org.crsh.shell.Commands.list.add('close');\n" +
+        "      }\n" +
+        "    };\n" +
+        "  }\n" +
+        "}\n";
+    lifeCycle.bind("producer", producer);
+    lifeCycle.bind("consumer", consumer);
+    Commands.list.clear();
+    Throwable t = assertError("producer | consumer", ErrorType.EVALUATION);
+    ScriptException ex = assertInstance(ScriptException.class, t);
+    assertEquals("foo", ex.getMessage());
+
+    // The interrupted consumer is closed before the pipeline returns
+    assertEquals(Arrays.<Object>asList("close"), Commands.list);
+  }
+}
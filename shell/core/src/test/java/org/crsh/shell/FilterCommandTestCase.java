@@ -23,6 +23,7 @@ import org.crsh.command.ScriptException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 import static org.crsh.util.Utils.*;
 
 /**
@@ -52,6 +53,18 @@ public class FilterCommandTestCase extends AbstractCommandTestCase {
       "}\n" +
       "}";
   
+  public static Map<String, Pattern> selection;
+
+  private final String select_command = "class select_command extends org.crsh.command.CRaSHCommand {\n" +
+      "@Command\n" +
+      "public void main(org.crsh.command.InvocationContext<java.util.Map> context) {\n" +
+      "org.crsh.shell.FilterCommandTestCase.selection = org.crsh.io.Pipes.getSelection(context);\n" +
+      "context.provide([A:'A',B:'C']);\n" +
+      "context.provide([A:'B',B:'B']);\n" +
+      "context.provide([A:'C',B:'A']);\n" +
+      "}\n" +
+      "}";
+
   public void testSimple() throws Exception {
     output.clear();
     lifeCycle.bind("consume_command", consume_command);
@@ -83,4 +96,35 @@ public class FilterCommandTestCase extends AbstractCommandTestCase {
     assertEquals(list(map(map("A", "C"), "B", "A")), output);
   }
 
+  public void testSelection() throws Exception {
+    output.clear();
+    selection = null;
+    lifeCycle.bind("consume_command", consume_command);
+    lifeCycle.bind("select_command", select_command);
+    assertOk("select_command | filter -p A:C -p B:A | consume_command");
+    assertEquals(list(map(map("A", "C"), "B", "A")), output);
+    assertEquals(2, selection.size());
+    assertTrue(selection.get("A").matcher("C").matches());
+    assertFalse(selection.get("A").matcher("A").matches());
+    assertTrue(selection.get("B").matcher("A").matches());
+    assertFalse(selection.get("B").matcher("C").matches());
+  }
+
+  public void testNoSelection() throws Exception {
+    output.clear();
+    selection = null;
+    lifeCycle.bind("consume_command", consume_command);
+    lifeCycle.bind("select_command", select_command);
+    assertOk("select_command | consume_command");
+    assertNull(selection);
+    assertEquals(3, output.size());
+  }
+
+  public void testSystemPropertiesSelection() throws Exception {
+    output.clear();
+    lifeCycle.bind("consume_command", consume_command);
+    assertOk("system propls | filter -p NAME:java\\.version | consume_command");
+    assertEquals(1, output.size());
+    assertEquals(System.getProperty("java.version"), output.get(0).get("VALUE"));
+  }
 }
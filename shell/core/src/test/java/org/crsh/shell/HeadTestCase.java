@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell;
+
+import org.crsh.shell.impl.command.PipeLineFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class HeadTestCase extends AbstractCommandTestCase {
+
+  /** The number of elements produced by the producer. */
+  public static int produced;
+
+  /** . */
+  private static final String PRODUCER =
+      "class producer extends org.crsh.command.CRaSHCommand {\n" +
+      "  @Command\n" +
+      "  public void main(org.crsh.command.InvocationContext<Integer> context) {\n" +
+      "    for (int i = 0;i < 1000 && !org.crsh.io.Pipes.isDone(context);i++) {\n" +
+      "      org.crsh.shell.HeadTestCase.produced++;\n" +
+      "      context.provide(i);\n" +
+      "    }\n" +
+      "  }\n" +
+      "}";
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    //
+    lifeCycle.bind("producer", PRODUCER);
+    lifeCycle.bind("consumer", Commands.ConsumeInteger.class);
+    Commands.list.clear();
+    produced = 0;
+  }
+
+  private List<Object> range(int size) {
+    List<Object> range = new ArrayList<Object>();
+    for (int i = 0;i < size;i++) {
+      range.add(i);
+    }
+    return range;
+  }
+
+  public void testHead() throws Exception {
+    assertOk("producer | head -n 5 | consumer");
+    assertEquals(range(5), Commands.list);
+    assertEquals(5, produced);
+  }
+
+  public void testDefault() throws Exception {
+    assertOk("producer | head | consumer");
+    assertEquals(range(10), Commands.list);
+    assertEquals(10, produced);
+  }
+
+  public void testCount() throws Exception {
+    assertOk("producer | head 3 | consumer");
+    assertEquals(range(3), Commands.list);
+  }
+
+  public void testNotDone() throws Exception {
+    assertOk("producer | head -n 2000 | consumer");
+    assertEquals(range(1000), Commands.list);
+    assertEquals(1000, produced);
+  }
+
+  public void testProvideAll() throws Exception {
+    String producer =
+        "class producer extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public void main(org.crsh.command.InvocationContext<Integer> context) {\n" +
+        "    context.provideAll([1, 2, 3]);\n" +
+        "    context.provideAll([4, 5, 6]);\n" +
+        "  }\n" +
+        "}";
+    lifeCycle.bind("producer", producer);
+    assertOk("producer | head -n 4 | consumer");
+    assertEquals(Arrays.<Object>asList(1, 2, 3, 4), Commands.list);
+  }
+
+  public void testConcurrent() throws Exception {
+    shell.put(PipeLineFactory.QUEUE_SIZE_ATTRIBUTE, 2);
+    assertOk("producer | head -n 5 | consumer");
+    assertEquals(range(5), Commands.list);
+    assertTrue(produced < 1000);
+  }
+
+  public void testClosure() throws Exception {
+    String foo =
+        "class foo extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public void main() {\n" +
+        "    def closure = head\n" +
+        "    producer closure\n" +
+        "  }\n" +
+        "}";
+    lifeCycle.bind("foo", foo);
+    assertOk("foo");
+    assertEquals(10, produced);
+  }
+
+  public void testHelp() throws Exception {
+    assertTrue(assertOk("help").contains("head"));
+  }
+
+  public void testInvalidCount() throws Exception {
+    assertEvalError("producer | head -n -1 | consumer");
+  }
+}
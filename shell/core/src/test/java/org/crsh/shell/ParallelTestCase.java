@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell;
+
+import org.crsh.BaseProcessContext;
+import org.crsh.command.ScriptException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ParallelTestCase extends AbstractCommandTestCase {
+
+  /** The last element produced by the producer. */
+  public static volatile int produced;
+
+  /** Counted down when the blocking command consumes an element. */
+  public static CountDownLatch blocked;
+
+  /** . */
+  private static final String PRODUCER =
+      "class producer extends org.crsh.command.CRaSHCommand {\n" +
+      "  @Command\n" +
+      "  public void main(org.crsh.command.InvocationContext<Integer> context) {\n" +
+      "    for (int i = 0;i < 100;i++) {\n" +
+      "      context.provide(i);\n" +
+      "    }\n" +
+      "  }\n" +
+      "}";
+
+  /** . */
+  private static final String TWICE =
+      "class twice extends org.crsh.command.CRaSHCommand {\n" +
+      "  @Command\n" +
+      "  public org.crsh.command.PipeCommand<Integer, Integer> main() {\n" +
+      "    return new org.crsh.command.PipeCommand<Integer, Integer>() {\n" +
+      "      public void provide(Integer element) {\n" +
+      "        Thread.sleep(element % 3);\n" +
+      "        context.provide(element * 2);\n" +
+      "      }\n" +
+      "    };\n" +
+      "  }\n" +
+      "}";
+
+  private List<Object> expected() {
+    List<Object> expected = new ArrayList<Object>();
+    for (int i = 0;i < 100;i++) {
+      expected.add(i * 2);
+    }
+    return expected;
+  }
+
+  public void testOrdered() throws Exception {
+    lifeCycle.bind("producer", PRODUCER);
+    lifeCycle.bind("twice", TWICE);
+    lifeCycle.bind("consumer", Commands.ConsumeInteger.class);
+
+    //
+    Commands.list.clear();
+    assertOk("producer | parallel -n 4 twice | consumer");
+    assertEquals(expected(), Commands.list);
+  }
+
+  public void testUnordered() throws Exception {
+    lifeCycle.bind("producer", PRODUCER);
+    lifeCycle.bind("twice", TWICE);
+    lifeCycle.bind("consumer", Commands.ConsumeInteger.class);
+
+    //
+    Commands.list.clear();
+    assertOk("producer | parallel -u --threads 4 twice | consumer");
+    List<Object> actual = new ArrayList<Object>(Commands.list);
+    Collections.sort((List)actual);
+    assertEquals(expected(), actual);
+  }
+
+  public void testFlush() throws Exception {
+    String count =
+        "class count extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public org.crsh.command.PipeCommand<Integer, Integer> main() {\n" +
+        "    return new org.crsh.command.PipeCommand<Integer, Integer>() {\n" +
+        "      int n = 0;\n" +
+        "      public void provide(Integer element) {\n" +
+        "        n++;\n" +
+        "      }\n" +
+        "      public void flush() {\n" +
+        "        context.provide(n);\n" +
+        "        super.flush();\n" +
+        "      }\n" +
+        "    };\n" +
+        "  }\n" +
+        "}";
+    lifeCycle.bind("producer", PRODUCER);
+    lifeCycle.bind("count", count);
+    lifeCycle.bind("consumer", Commands.ConsumeInteger.class);
+
+    // Each thread has its own command instance
+    Commands.list.clear();
+    assertOk("producer | parallel -n 3 count | consumer");
+    assertEquals(3, Commands.list.size());
+    int total = 0;
+    for (Object o : Commands.list) {
+      total += (Integer)o;
+    }
+    assertEquals(100, total);
+  }
+
+  public void testProducer() throws Exception {
+    lifeCycle.bind("producer", Commands.ProduceInteger.class);
+    lifeCycle.bind("consumer", Commands.ConsumeInteger.class);
+
+    // A producer is invoked once
+    Commands.list.clear();
+    assertOk("parallel -n 4 producer | consumer");
+    assertEquals(Collections.<Object>singletonList(3), Commands.list);
+  }
+
+  public void testThrowScriptException() throws Exception {
+    String failing =
+        "class failing extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public org.crsh.command.PipeCommand<Integer, Integer> main() {\n" +
+        "    return new org.crsh.command.PipeCommand<Integer, Integer>() {\n" +
+        "      public void provide(Integer element) {\n" +
+        "        throw new org.crsh.command.ScriptException('foo');\n" +
+        "      }\n" +
+        "    };\n" +
+        "  }\n" +
+        "}";
+    lifeCycle.bind("producer", PRODUCER);
+    lifeCycle.bind("failing", failing);
+    Throwable t = assertError("producer | parallel -n 4 failing", ErrorType.EVALUATION);
+    ScriptException ex = assertInstance(ScriptException.class, t);
+    assertEquals("foo", ex.getMessage());
+  }
+
+  public void testFailureStopsProducer() throws Exception {
+    String producer =
+        "class producer extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public void main(org.crsh.command.InvocationContext<Integer> context) {\n" +
+        "    for (int i = 0;i < 100000;i++) {\n" +
+        "      org.crsh.shell.ParallelTestCase.produced = i;\n" +
+        "      context.provide(i);\n" +
+        "    }\n" +
+        "  }\n" +
+        "}";
+    String failing =
+        "class failing extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public org.crsh.command.PipeCommand<Integer, Integer> main() {\n" +
+        "    return new org.crsh.command.PipeCommand<Integer, Integer>() {\n" +
+        "      public void provide(Integer element) {\n" +
+        "        if (element == 10) {\n" +
+        "          throw new org.crsh.command.ScriptException('foo');\n" +
+        "        }\n" +
+        "      }\n" +
+        "    };\n" +
+        "  }\n" +
+        "}";
+    lifeCycle.bind("producer", producer);
+    lifeCycle.bind("failing", failing);
+    produced = 0;
+    Throwable t = assertError("producer | parallel -n 2 failing", ErrorType.EVALUATION);
+    ScriptException ex = assertInstance(ScriptException.class, t);
+    assertEquals("foo", ex.getMessage());
+    assertTrue("Was expecting the producer to stop instead of producing " + produced + " elements", produced < 100);
+  }
+
+  public void testCancel() throws Exception {
+    String producer =
+        "class producer extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public void main(org.crsh.command.InvocationContext<Integer> context) {\n" +
+        "    for (int i = 0;true;i++) {\n" +
+        "      context.provide(i);\n" +
+        "    }\n" +
+        "  }\n" +
+        "}";
+    String blocking =
+        "class blocking extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public org.crsh.command.PipeCommand<Integer, Integer> main() {\n" +
+        "    return new org.crsh.command.PipeCommand<Integer, Integer>() {\n" +
+        "      public void provide(Integer element) {\n" +
+        "        org.crsh.shell.ParallelTestCase.blocked.countDown();\n" +
+        "        Thread.sleep(100000);\n" +
+        "      }\n" +
+        "    };\n" +
+        "  }\n" +
+        "}";
+    lifeCycle.bind("producer", producer);
+    lifeCycle.bind("blocking", blocking);
+    blocked = new CountDownLatch(2);
+    final BaseProcessContext ctx = create("producer | parallel -n 2 blocking");
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        ctx.execute();
+      }
+    };
+    t.start();
+    assertTrue(blocked.await(10, TimeUnit.SECONDS));
+    ctx.cancel();
+    ShellResponse resp = ctx.getResponse();
+    assertEquals(ShellResponse.Cancelled.class, resp.getClass());
+    t.join(10000);
+    assertFalse(t.isAlive());
+  }
+
+  public void testUnknownCommand() throws Exception {
+    ShellResponse resp = evaluate("parallel -n 2 unknown_command");
+    assertInstance(ShellResponse.UnknownCommand.class, resp);
+    assertEquals("unknown_command", ((ShellResponse.UnknownCommand)resp).getName());
+  }
+
+  public void testMissingCommand() throws Exception {
+    assertError("parallel -n 2", ErrorType.EVALUATION);
+  }
+
+  public void testHelp() throws Exception {
+    assertTrue(assertOk("help").contains("parallel"));
+    assertTrue(assertOk("parallel -h").contains("--threads"));
+  }
+}
@@ -122,7 +122,7 @@ public class PipeTestCase extends AbstractCommandTestCase {
     //
     Commands.list.clear();
     assertOk("producer | consumer");
-    assertEquals(Arrays.asList("open"), Commands.list);
+    assertEquals(Arrays.asList("open", "close"), Commands.list);
   }
 
   public void testPropagateFlush() throws Exception {
@@ -271,4 +271,19 @@ public class PipeTestCase extends AbstractCommandTestCase {
     assertOk("produce_command | f | consume_command");
     assertEquals(2, Commands.list.size());
   }
+
+  public void testProvideAll() throws Exception {
+    String producer =
+        "class producer extends org.crsh.command.CRaSHCommand {\n" +
+        "  @Command\n" +
+        "  public void main(org.crsh.command.InvocationContext<Integer> context) {\n" +
+        "    context.provideAll([1, 'foo', 2]);\n" +
+        "  }\n" +
+        "}";
+    lifeCycle.bind("producer", producer);
+    lifeCycle.bind("consumer", Commands.ConsumeInteger.class);
+    Commands.list.clear();
+    assertOk("producer | consumer");
+    assertEquals(Arrays.<Object>asList(1, 2), Commands.list);
+  }
 }
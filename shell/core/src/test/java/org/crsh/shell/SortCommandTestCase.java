@@ -18,10 +18,13 @@
  */
 package org.crsh.shell;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
@@ -164,5 +167,129 @@ public class SortCommandTestCase extends AbstractCommandTestCase {
     assertEquals("A", ((Map<String,String>)output.get(2)).get("C"));
   }
 
+  public void testSpill() throws Exception {
+    output.clear();
+    lifeCycle.bind("produce_command", produce_command);
+    lifeCycle.bind("consume_command", consume_command);
+    assertOk("produce_command | sort -f B -b 1 | consume_command");
+    assertEquals(3, output.size());
+    assertEquals("A", ((Map<String,String>)output.get(0)).get("A"));
+    assertEquals("A", ((Map<String,String>)output.get(0)).get("B"));
+    assertEquals("B", ((Map<String,String>)output.get(0)).get("C"));
+    assertEquals("A", ((Map<String,String>)output.get(1)).get("A"));
+    assertEquals("B", ((Map<String,String>)output.get(1)).get("B"));
+    assertEquals("C", ((Map<String,String>)output.get(1)).get("C"));
+    assertEquals("C", ((Map<String,String>)output.get(2)).get("A"));
+    assertEquals("B", ((Map<String,String>)output.get(2)).get("B"));
+    assertEquals("A", ((Map<String,String>)output.get(2)).get("C"));
+  }
+
+  public void testSpillMany() throws Exception {
+    output.clear();
+    lifeCycle.bind("produce_command", produce_command);
+    lifeCycle.bind("consume_command", consume_command);
+    assertOk("produce_command | sort -f B:desc -b 2 | consume_command");
+    assertEquals(3, output.size());
+    assertEquals("A", ((Map<String,String>)output.get(0)).get("A"));
+    assertEquals("B", ((Map<String,String>)output.get(0)).get("B"));
+    assertEquals("C", ((Map<String,String>)output.get(0)).get("C"));
+    assertEquals("C", ((Map<String,String>)output.get(1)).get("A"));
+    assertEquals("B", ((Map<String,String>)output.get(1)).get("B"));
+    assertEquals("A", ((Map<String,String>)output.get(1)).get("C"));
+    assertEquals("A", ((Map<String,String>)output.get(2)).get("A"));
+    assertEquals("A", ((Map<String,String>)output.get(2)).get("B"));
+    assertEquals("B", ((Map<String,String>)output.get(2)).get("C"));
+  }
+
+  public void testLimit() throws Exception {
+    output.clear();
+    lifeCycle.bind("produce_command", produce_command);
+    lifeCycle.bind("consume_command", consume_command);
+    assertOk("produce_command | sort -f B -n 2 | consume_command");
+    assertEquals(2, output.size());
+    assertEquals("A", ((Map<String,String>)output.get(0)).get("A"));
+    assertEquals("A", ((Map<String,String>)output.get(0)).get("B"));
+    assertEquals("B", ((Map<String,String>)output.get(0)).get("C"));
+    assertEquals("A", ((Map<String,String>)output.get(1)).get("A"));
+    assertEquals("B", ((Map<String,String>)output.get(1)).get("B"));
+    assertEquals("C", ((Map<String,String>)output.get(1)).get("C"));
+  }
 
+  public void testLimitDesc() throws Exception {
+    output.clear();
+    lifeCycle.bind("produce_command", produce_command);
+    lifeCycle.bind("consume_command", consume_command);
+    assertOk("produce_command | sort -f B:desc --limit 2 | consume_command");
+    assertEquals(2, output.size());
+    assertEquals("A", ((Map<String,String>)output.get(0)).get("A"));
+    assertEquals("B", ((Map<String,String>)output.get(0)).get("B"));
+    assertEquals("C", ((Map<String,String>)output.get(0)).get("C"));
+    assertEquals("C", ((Map<String,String>)output.get(1)).get("A"));
+    assertEquals("B", ((Map<String,String>)output.get(1)).get("B"));
+    assertEquals("A", ((Map<String,String>)output.get(1)).get("C"));
+  }
+
+  public void testLimitZero() throws Exception {
+    output.clear();
+    lifeCycle.bind("produce_command", produce_command);
+    lifeCycle.bind("consume_command", consume_command);
+    assertOk("produce_command | sort -f B -n 0 | consume_command");
+    assertEquals(0, output.size());
+  }
+
+  public void testSpillNotSerializable() throws Exception {
+    String produce_not_serializable = "class produce_not_serializable extends org.crsh.command.CRaSHCommand {\n" +
+        "@Command\n" +
+        "public void main(org.crsh.command.InvocationContext<java.util.Map> context) {\n" +
+        "for (int i = 3;i > 0;i--) {\n" +
+        "java.util.Map m = new java.util.HashMap<String, Object>();\n" +
+        "m.put(\"A\", i);\n" +
+        "m.put(\"B\", new Object());\n" +
+        "context.provide(m);\n" +
+        "}\n" +
+        "}\n" +
+        "}";
+    output.clear();
+    lifeCycle.bind("produce_not_serializable", produce_not_serializable);
+    lifeCycle.bind("consume_command", consume_command);
+    assertOk("produce_not_serializable | sort -f A -b 1 | consume_command");
+    assertEquals(3, output.size());
+    assertEquals(1, output.get(0).get("A"));
+    assertEquals(2, output.get(1).get("A"));
+    assertEquals(3, output.get(2).get("A"));
+  }
+
+  public void testSpillFailure() throws Exception {
+    String produce_failure = "class produce_failure extends org.crsh.command.CRaSHCommand {\n" +
+        "@Command\n" +
+        "public void main(org.crsh.command.InvocationContext<java.util.Map> context) {\n" +
+        "for (int i = 3;i > 0;i--) {\n" +
+        "java.util.Map m = new java.util.HashMap<String, Object>();\n" +
+        "m.put(\"A\", i);\n" +
+        "context.provide(m);\n" +
+        "}\n" +
+        "throw new org.crsh.command.ScriptException(\"failure\");\n" +
+        "}\n" +
+        "}";
+    Set<String> before = runs();
+    output.clear();
+    lifeCycle.bind("produce_failure", produce_failure);
+    lifeCycle.bind("consume_command", consume_command);
+    assertEvalError("produce_failure | sort -f A -b 1 | consume_command");
+    assertEquals(0, output.size());
+    assertEquals(before, runs());
+  }
+
+  private Set<String> runs() {
+    Set<String> runs = new HashSet<String>();
+    String[] names = new File(System.getProperty("java.io.tmpdir")).list();
+    if (names != null) {
+      for (String name : names) {
+        if (name.startsWith("crash-sort") && name.endsWith(".run")) {
+          runs.add(name);
+        }
+      }
+    }
+    return runs;
+  }
 }
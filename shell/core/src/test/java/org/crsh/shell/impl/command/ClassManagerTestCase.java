@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.shell.impl.command;
+
+import junit.framework.TestCase;
+import org.crsh.cmdline.ClassDescriptor;
+import org.crsh.command.CRaSHCommand;
+import org.crsh.command.GroovyScriptCommand;
+import org.crsh.command.NoSuchCommandException;
+import org.crsh.command.ShellCommand;
+import org.crsh.plugin.PluginContext;
+import org.crsh.plugin.ResourceKind;
+import org.crsh.plugin.SimplePluginDiscovery;
+import org.crsh.vfs.FS;
+import org.crsh.vfs.Path;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+public class ClassManagerTestCase extends TestCase {
+
+  /** . */
+  private static final String COMMAND = "public class foo extends org.crsh.command.CRaSHCommand {}";
+
+  /** . */
+  private static final String BROKEN = "public class foo extends org.crsh.command.CRaSHCommand {";
+
+  /** . */
+  private File root;
+
+  /** The last modification of the root directory, the directory is touched after each change. */
+  private long modified;
+
+  /** . */
+  private PluginContext context;
+
+  /** . */
+  private ClassManager<ShellCommand> manager;
+
+  @Override
+  protected void setUp() throws Exception {
+    root = File.createTempFile("crash", "");
+    assertTrue(root.delete());
+    assertTrue(root.mkdir());
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    context = new PluginContext(
+      new SimplePluginDiscovery(),
+      new HashMap<String, Object>(),
+      new FS().mount(root),
+      new FS().mount(loader, Path.get("/crash/")),
+      loader);
+    manager = new ClassManager<ShellCommand>(context, ResourceKind.COMMAND, ShellCommand.class, GroovyScriptCommand.class);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    File[] files = root.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    root.delete();
+  }
+
+  private void write(String name, String source, long timestamp) throws IOException {
+    File file = new File(root, name + ".groovy");
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(source.getBytes("UTF-8"));
+    }
+    finally {
+      out.close();
+    }
+    assertTrue(file.setLastModified(timestamp));
+    touch();
+  }
+
+  private void delete(String name) {
+    assertTrue(new File(root, name + ".groovy").delete());
+    touch();
+  }
+
+  private void touch() {
+    // The file system may not record the sub second modifications of the directory
+    modified += 1000;
+    assertTrue(root.setLastModified(modified));
+    context.refresh();
+  }
+
+  public void testCompilationFailure() throws Exception {
+    write("foo", BROKEN, 1000);
+    NoSuchCommandException failure = null;
+    try {
+      manager.getClass("foo");
+      fail();
+    }
+    catch (NoSuchCommandException e) {
+      failure = e;
+    }
+
+    // The failure is cached until the script is modified
+    try {
+      manager.getClass("foo");
+      fail();
+    }
+    catch (NoSuchCommandException e) {
+      assertSame(failure, e);
+    }
+
+    // The fixed script is compiled
+    write("foo", COMMAND, 2000);
+    Class<? extends ShellCommand> clazz = manager.getClass("foo");
+    assertNotNull(clazz);
+    assertEquals("foo", clazz.getSimpleName());
+  }
+
+  public void testCompilationFailureRemoved() throws Exception {
+    write("foo", BROKEN, 1000);
+    NoSuchCommandException failure = null;
+    try {
+      manager.getClass("foo");
+      fail();
+    }
+    catch (NoSuchCommandException e) {
+      failure = e;
+    }
+
+    // The failure is forgotten when the script disappears
+    delete("foo");
+    assertNull(manager.getClass("foo"));
+    write("foo", BROKEN, 1000);
+    try {
+      manager.getClass("foo");
+      fail();
+    }
+    catch (NoSuchCommandException e) {
+      assertNotSame(failure, e);
+    }
+  }
+
+  public void testReload() throws Exception {
+    write("foo", COMMAND, 1000);
+    Class<? extends ShellCommand> clazz = manager.getClass("foo");
+    assertSame(clazz, manager.getClass("foo"));
+    assertEquals(1, manager.getLoaderCount());
+    WeakReference<ClassLoader> loader = new WeakReference<ClassLoader>(clazz.getClassLoader());
+
+    // The reloaded command is defined by a new generation
+    write("foo", COMMAND, 2000);
+    Class<? extends ShellCommand> reloaded = manager.getClass("foo");
+    assertNotSame(clazz, reloaded);
+    assertNotSame(loader.get(), reloaded.getClassLoader());
+
+    // The previous generation is collected once its classes are not referenced anymore
+    clazz = null;
+    for (int i = 0;i < 20 && loader.get() != null;i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    assertNull(loader.get());
+    assertEquals(1, manager.getLoaderCount());
+    assertSame(reloaded, manager.getClass("foo"));
+  }
+
+  public void testVersions() throws Exception {
+    write("foo", COMMAND, 1000);
+    Class<? extends ShellCommand> clazz = manager.getClass("foo");
+    CommandVersions versions = new CommandVersions();
+    versions.add("foo", manager.getVersion("foo", clazz));
+    assertTrue(versions.isCurrent(manager));
+
+    // Loading another class keeps the versions current
+    write("bar", COMMAND.replace("foo", "bar"), 1000);
+    assertNotNull(manager.getClass("bar"));
+    assertTrue(versions.isCurrent(manager));
+
+    // Reloading the class does not
+    write("foo", COMMAND, 2000);
+    Class<? extends ShellCommand> reloaded = manager.getClass("foo");
+    assertFalse(versions.isCurrent(manager));
+    assertEquals(-1, manager.getVersion("foo", clazz));
+    assertEquals(manager.getVersion("foo"), manager.getVersion("foo", reloaded));
+  }
+
+  public void testDescriptor() throws Exception {
+    write("foo", COMMAND, 1000);
+    Class<? extends ShellCommand> clazz = manager.getClass("foo");
+    CRaSHCommand command = (CRaSHCommand)clazz.newInstance();
+
+    // The class is introspected once
+    ClassDescriptor<?> descriptor = command.getDescriptor();
+    assertSame(clazz, descriptor.getType());
+    assertSame(descriptor, ((CRaSHCommand)clazz.newInstance()).getDescriptor());
+
+    // The reloaded class gets its own descriptor
+    write("foo", COMMAND, 2000);
+    Class<? extends ShellCommand> reloaded = manager.getClass("foo");
+    ClassDescriptor<?> reloadedDescriptor = ((CRaSHCommand)reloaded.newInstance()).getDescriptor();
+    assertNotSame(descriptor, reloadedDescriptor);
+    assertSame(reloaded, reloadedDescriptor.getType());
+    assertSame(reloadedDescriptor, ((CRaSHCommand)reloaded.newInstance()).getDescriptor());
+
+    // The cache does not keep a descriptor, and so its class, once the command instances are collected
+    WeakReference<ClassDescriptor<?>> ref = new WeakReference<ClassDescriptor<?>>(descriptor);
+    command = null;
+    descriptor = null;
+    for (int i = 0;i < 20 && ref.get() != null;i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    assertNull(ref.get());
+  }
+
+  public void testWarmUp() throws Exception {
+    write("foo", COMMAND, 1000);
+    write("bar", BROKEN.replace("foo", "bar"), 1000);
+    Records records = new Records();
+    Logger logger = Logger.getLogger(ClassManager.class.getName());
+    logger.addHandler(records);
+    try {
+      manager.warmUp(2);
+      for (int i = 0;i < 100 && records.get(Level.INFO).size() < 2;i++) {
+        Thread.sleep(50);
+      }
+
+      // The summary is logged once all the scripts are compiled
+      List<LogRecord> infos = records.get(Level.INFO);
+      assertEquals(2, infos.size());
+      assertTrue(infos.get(1).getMessage().startsWith("Compiled 1 scripts in "));
+      assertTrue(infos.get(1).getMessage().endsWith(" with 1 failures"));
+
+      // The failure is logged without aborting the compilation of the other scripts
+      List<LogRecord> warnings = records.get(Level.WARNING);
+      assertEquals(1, warnings.size());
+      assertEquals("Could not compile script bar", warnings.get(0).getMessage());
+      assertEquals(1, manager.getVersion());
+      assertNotNull(manager.getClass("foo"));
+      assertEquals(1, manager.getVersion());
+    }
+    finally {
+      logger.removeHandler(records);
+    }
+  }
+
+  public void testConcurrentLoad() throws Exception {
+    write("foo", COMMAND, 1000);
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Object> loaded = Collections.synchronizedList(new ArrayList<Object>());
+    Thread[] threads = new Thread[8];
+    for (int i = 0;i < threads.length;i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            loaded.add(manager.getClass("foo"));
+          }
+          catch (Exception e) {
+            loaded.add(e);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // The script is compiled once in a single generation
+    assertEquals(threads.length, loaded.size());
+    for (Object clazz : loaded) {
+      assertSame(manager.getClass("foo"), clazz);
+    }
+    assertEquals(1, manager.getVersion());
+    assertEquals(1, manager.getLoaderCount());
+  }
+
+  public void testWarmUpEmpty() throws Exception {
+    Records records = new Records();
+    Logger logger = Logger.getLogger(ClassManager.class.getName());
+    logger.addHandler(records);
+    try {
+      manager.warmUp(2);
+      for (int i = 0;i < 100 && records.get(Level.INFO).size() < 1;i++) {
+        Thread.sleep(50);
+      }
+      List<LogRecord> infos = records.get(Level.INFO);
+      assertEquals(1, infos.size());
+      assertEquals("No scripts to compile", infos.get(0).getMessage());
+    }
+    finally {
+      logger.removeHandler(records);
+    }
+  }
+
+  private static class Records extends Handler {
+
+    /** . */
+    private final List<LogRecord> records = new ArrayList<LogRecord>();
+
+    synchronized List<LogRecord> get(Level level) {
+      List<LogRecord> list = new ArrayList<LogRecord>();
+      for (LogRecord record : records) {
+        if (record.getLevel() == level) {
+          list.add(record);
+        }
+      }
+      return list;
+    }
+
+    @Override
+    public synchronized void publish(LogRecord record) {
+      records.add(record);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
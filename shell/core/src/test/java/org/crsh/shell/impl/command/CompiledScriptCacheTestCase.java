@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.shell.impl.command;
+
+import groovy.lang.GroovyClassLoader;
+import junit.framework.TestCase;
+import org.codehaus.groovy.control.CompilerConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+
+public class CompiledScriptCacheTestCase extends TestCase {
+
+  /** . */
+  private static final String SOURCE = "class foo { class bar {} }";
+
+  /** . */
+  private File dir;
+
+  @Override
+  protected void setUp() throws Exception {
+    dir = File.createTempFile("crash", "");
+    assertTrue(dir.delete());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  private CompiledScript compile(String source) {
+    GroovyClassLoader loader = new GroovyClassLoader(Thread.currentThread().getContextClassLoader());
+    return CompiledScript.compile(loader, new CompilerConfiguration(), "foo", source);
+  }
+
+  private void assertEquals(CompiledScript expected, CompiledScript actual) {
+    assertEquals(expected.mainClassName, actual.mainClassName);
+    assertEquals(expected.classes.keySet(), actual.classes.keySet());
+    for (String name : expected.classes.keySet()) {
+      assertTrue(Arrays.equals(expected.classes.get(name), actual.classes.get(name)));
+    }
+  }
+
+  public void testCompiledScript() throws Exception {
+    CompiledScript script = compile(SOURCE);
+    assertEquals("foo", script.mainClassName);
+    assertEquals(2, script.classes.size());
+    assertTrue(script.classes.containsKey("foo$bar"));
+
+    //
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(buffer);
+    script.write(out);
+    out.close();
+    assertEquals(script, CompiledScript.read(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()))));
+
+    // An unknown format is rejected
+    byte[] bytes = buffer.toByteArray();
+    bytes[3]++;
+    try {
+      CompiledScript.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+      fail();
+    }
+    catch (IOException ignore) {
+    }
+  }
+
+  public void testHit() throws Exception {
+    CompiledScriptCache cache = new CompiledScriptCache(dir, "1.0", "a.jar");
+    CompiledScript script = compile(SOURCE);
+    String key = cache.key("foo", "options", SOURCE);
+    cache.put(key, script);
+
+    // Another cache on the same dir reads the same entry
+    CompiledScriptCache other = new CompiledScriptCache(dir, "1.0", "a.jar");
+    assertEquals(key, other.key("foo", "options", SOURCE));
+    assertEquals(script, other.get(key));
+  }
+
+  public void testMiss() throws Exception {
+    CompiledScriptCache cache = new CompiledScriptCache(dir, "1.0", "a.jar");
+    assertNull(cache.get(cache.key("foo", "options", SOURCE)));
+    cache.put(cache.key("foo", "options", SOURCE), compile(SOURCE));
+
+    // Any change of the source, name or options is a miss
+    assertNull(cache.get(cache.key("foo", "options", "class foo {}")));
+    assertNull(cache.get(cache.key("bar", "options", SOURCE)));
+    assertNull(cache.get(cache.key("foo", "static", SOURCE)));
+  }
+
+  public void testInvalidation() throws Exception {
+    CompiledScriptCache cache = new CompiledScriptCache(dir, "1.0", "a.jar");
+    String key = cache.key("foo", "options", SOURCE);
+    cache.put(key, compile(SOURCE));
+
+    // The entries of another version or class path are not used
+    assertNull(new CompiledScriptCache(dir, "1.1", "a.jar").get(new CompiledScriptCache(dir, "1.1", "a.jar").key("foo", "options", SOURCE)));
+    assertNull(new CompiledScriptCache(dir, "1.0", "b.jar").get(new CompiledScriptCache(dir, "1.0", "b.jar").key("foo", "options", SOURCE)));
+
+    // A corrupted entry is a miss
+    FileOutputStream out = new FileOutputStream(new File(dir, key + ".classes"));
+    try {
+      out.write(new byte[]{1, 2, 3});
+    }
+    finally {
+      out.close();
+    }
+    assertNull(cache.get(key));
+
+    // And it is replaced by the next compilation
+    CompiledScript script = compile(SOURCE);
+    cache.put(key, script);
+    assertEquals(script, cache.get(key));
+  }
+
+  public void testClassPath() throws Exception {
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    assertEquals(CompiledScriptCache.getClassPath(loader), CompiledScriptCache.getClassPath(loader));
+    URLClassLoader child = new URLClassLoader(new URL[]{dir.toURI().toURL()}, loader);
+    assertFalse(CompiledScriptCache.getClassPath(loader).equals(CompiledScriptCache.getClassPath(child)));
+  }
+}
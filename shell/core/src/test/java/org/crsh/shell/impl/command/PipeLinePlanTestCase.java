@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.shell.impl.command;
+
+import org.crsh.io.Filter;
+import org.crsh.shell.AbstractCommandTestCase;
+import org.crsh.shell.Commands;
+import org.crsh.text.Chunk;
+
+import java.util.Arrays;
+
+public class PipeLinePlanTestCase extends AbstractCommandTestCase {
+
+  public void testReuse() throws Exception {
+    lifeCycle.bind("producer", Commands.ProduceInteger.class);
+    lifeCycle.bind("consumer", Commands.ConsumeInteger.class);
+
+    //
+    Commands.list.clear();
+    assertOk("producer | consumer");
+    PipeLinePlan plan = shell.crash.getPipeLine("producer | consumer").plan;
+    assertNotNull(plan);
+    assertEquals(2, plan.getSize());
+    assertEquals(PipeLinePlan.Adapter.DIRECT, plan.getAdapter(0));
+
+    //
+    assertOk("producer | consumer");
+    assertSame(plan, shell.crash.getPipeLine("producer | consumer").plan);
+    assertEquals(Arrays.<Object>asList(3, 3), Commands.list);
+  }
+
+  public void testAdapt() throws Exception {
+    lifeCycle.bind("producer", Commands.ProduceValue.class);
+    lifeCycle.bind("consumer", Commands.ConsumeChunk.class);
+    lifeCycle.bind("sink", Commands.ConsumeBoolean.class);
+
+    //
+    assertOk("producer | consumer");
+    assertEquals(PipeLinePlan.Adapter.CHUNK, shell.crash.getPipeLine("producer | consumer").plan.getAdapter(0));
+    assertOk("producer | sink");
+    assertEquals(PipeLinePlan.Adapter.SINK, shell.crash.getPipeLine("producer | sink").plan.getAdapter(0));
+  }
+
+  public void testKeep() throws Exception {
+    lifeCycle.bind("producer", Commands.ProduceInteger.class);
+    lifeCycle.bind("consumer", Commands.ConsumeInteger.class);
+    lifeCycle.bind("other", Commands.Noop.class);
+
+    //
+    assertOk("producer | consumer");
+    PipeLinePlan plan = shell.crash.getPipeLine("producer | consumer").plan;
+    assertNotNull(plan);
+
+    // Loading another command class keeps the plan
+    assertOk("other");
+    assertOk("producer | consumer");
+    assertSame(plan, shell.crash.getPipeLine("producer | consumer").plan);
+  }
+
+  public void testApplies() throws Exception {
+    CommandVersions versions = new CommandVersions();
+    versions.add("foo", 1);
+    PipeLinePlan plan = PipeLinePlan.create(new Filter[0], Chunk.class, versions);
+    CommandVersions same = new CommandVersions();
+    same.add("foo", 1);
+    assertTrue(plan.applies(same, Chunk.class));
+
+    // A reloaded command class or another context type needs a new plan
+    CommandVersions reloaded = new CommandVersions();
+    reloaded.add("foo", 2);
+    assertFalse(plan.applies(reloaded, Chunk.class));
+    assertFalse(plan.applies(same, Object.class));
+
+    // A plan computed without versions is never reused
+    assertFalse(PipeLinePlan.create(new Filter[0], Chunk.class, null).applies(same, Chunk.class));
+  }
+
+  public void testCachePipeLine() throws Exception {
+    lifeCycle.bind("producer", Commands.ProduceInteger.class);
+    lifeCycle.bind("consumer", Commands.ConsumeInteger.class);
+    lifeCycle.bind("other", Commands.Noop.class);
+
+    //
+    Commands.list.clear();
+    assertOk("producer | consumer");
+    PipeLineFactory pipeline = shell.crash.getPipeLine("producer | consumer");
+    assertOk("producer | consumer");
+    assertSame(pipeline, shell.crash.getPipeLine("producer | consumer"));
+    assertEquals(Arrays.<Object>asList(3, 3), Commands.list);
+
+    // Loading another command class keeps the pipeline
+    assertOk("other");
+    assertSame(pipeline, shell.crash.getPipeLine("producer | consumer"));
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.text;
+
+import org.crsh.AbstractTestCase;
+import org.crsh.io.ScreenContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ChunkAdapterTestCase extends AbstractTestCase {
+
+  /** . */
+  private final ChunkBuffer buffer = new ChunkBuffer();
+
+  /** . */
+  private final List<String> flushed = new ArrayList<String>();
+
+  private ChunkAdapter create(int batchSize) {
+    return new ChunkAdapter(new ScreenContext<Chunk>() {
+      public int getWidth() {
+        return 10;
+      }
+      public int getHeight() {
+        return 40;
+      }
+      public void provide(Chunk element) throws IOException {
+        buffer.provide(element);
+      }
+      public void flush() throws IOException {
+        flushed.add(buffer.toString());
+        buffer.clear();
+      }
+    }, batchSize);
+  }
+
+  private static Map<String, String> row(String a, String b) {
+    Map<String, String> row = new LinkedHashMap<String, String>();
+    row.put("A", a);
+    row.put("B", b);
+    return row;
+  }
+
+  public void testBatch() throws IOException {
+    ChunkAdapter adapter = create(2);
+    adapter.provide(row("a", "b"));
+    assertEquals(Collections.<String>emptyList(), flushed);
+    adapter.provide(row("c", "d"));
+    assertEquals(Arrays.asList(
+        "A B       \n" +
+        "----      \n" +
+        "a b       \n" +
+        "c d       \n"), flushed);
+    adapter.provide(row("e", "f"));
+    adapter.flush();
+    assertEquals(Arrays.asList(
+        "A B       \n" +
+        "----      \n" +
+        "a b       \n" +
+        "c d       \n",
+        "e f       \n"), flushed);
+  }
+
+  public void testFrozenWidths() throws IOException {
+    ChunkAdapter adapter = create(1);
+    adapter.provide(row("a", "b"));
+    adapter.provide(row("cd", "e"));
+    adapter.flush();
+    assertEquals(Arrays.asList(
+        "A B       \n" +
+        "----      \n" +
+        "a b       \n",
+        "c e       \n" +
+        "d         \n",
+        ""), flushed);
+  }
+
+  public void testUnbounded() throws IOException {
+    ChunkAdapter adapter = create(0);
+    adapter.provide(row("a", "b"));
+    adapter.provide(row("cd", "e"));
+    assertEquals(Collections.<String>emptyList(), flushed);
+    adapter.flush();
+    assertEquals(Arrays.asList(
+        "A  B      \n" +
+        "-----     \n" +
+        "a  b      \n" +
+        "cd e      \n"), flushed);
+  }
+
+  public void testNewStream() throws IOException {
+    ChunkAdapter adapter = create(1);
+    adapter.provide(row("a", "b"));
+    adapter.provide("foo");
+    adapter.provide(row("c", "d"));
+    adapter.flush();
+    assertEquals(Arrays.asList(
+        "A B       \n" +
+        "----      \n" +
+        "a b       \n",
+        "foo" +
+        "A B       \n" +
+        "----      \n" +
+        "c d       \n",
+        ""), flushed);
+  }
+}
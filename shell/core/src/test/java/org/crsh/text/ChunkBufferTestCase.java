@@ -20,9 +20,12 @@
 package org.crsh.text;
 
 import org.crsh.AbstractTestCase;
+import org.crsh.io.Pipe;
 import org.crsh.util.Utils;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class ChunkBufferTestCase extends AbstractTestCase {
@@ -77,6 +80,65 @@ public class ChunkBufferTestCase extends AbstractTestCase {
     assertReader(new ChunkBuffer().append(Color.red.fg(),"foo", Color.red.fg(), "bar"), Color.red.fg(), Text.create("foobar"));
   }
 
+  public void testCLS() {
+    assertReader(new ChunkBuffer().append("a").cls().append("b"), Text.create("a"), CLS.INSTANCE, Text.create("b"));
+  }
+
+  public void testGrow() {
+    ChunkBuffer buffer = new ChunkBuffer();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0;i < 1000;i++) {
+      buffer.append(i % 2 == 0 ? RED : BLUE).append("" + i);
+      expected.append(i);
+    }
+    assertEquals(expected.toString(), buffer.toString());
+    List<Chunk> res = Utils.list(buffer);
+    assertEquals(2000, res.size());
+    assertEquals(RED, res.get(0));
+    assertEquals(Text.create("0"), res.get(1));
+    assertEquals(BLUE, res.get(1998));
+    assertEquals(Text.create("999"), res.get(1999));
+  }
+
+  public void testFlush() throws IOException {
+    final List<Chunk> flushed = new ArrayList<Chunk>();
+    ChunkBuffer buffer = new ChunkBuffer(new Pipe<Chunk>() {
+      public void provide(Chunk element) {
+        flushed.add(element);
+      }
+      public void flush() {
+      }
+    });
+    buffer.append(RED, "a", RED, "b", 'c');
+    buffer.flush();
+    assertEquals(Arrays.<Chunk>asList(RED, Text.create("abc")), flushed);
+    assertTrue(buffer.isEmpty());
+    assertEquals("", buffer.toString());
+    flushed.clear();
+    buffer.append(RED, "e", BLUE, "f");
+    buffer.flush();
+    assertEquals(Arrays.<Chunk>asList(Text.create("e"), BLUE, Text.create("f")), flushed);
+  }
+
+  public void testClear() {
+    ChunkBuffer buffer = new ChunkBuffer().append(RED, "abc");
+    buffer.clear();
+    assertTrue(buffer.isEmpty());
+    buffer.append("de");
+    assertEquals("de", buffer.toString());
+    assertReader(buffer, Text.create("de"));
+  }
+
+  public void testEquals() {
+    ChunkBuffer buffer = new ChunkBuffer().append(RED, "foo", BLUE, "bar");
+    assertEquals(new ChunkBuffer().append("foobar"), buffer);
+    assertEquals("foobar".hashCode(), buffer.hashCode());
+    assertFalse(new ChunkBuffer().append("foo").equals(buffer));
+    assertTrue(buffer.contains("obar"));
+    assertTrue(buffer.contains(""));
+    assertFalse(buffer.contains("barf"));
+  }
+
   private void assertReader(ChunkBuffer reader, Chunk... expected) {
     List<Chunk> res = Utils.list(reader);
     assertEquals(expected.length, res.size());
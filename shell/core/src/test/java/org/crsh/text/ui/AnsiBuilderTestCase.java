@@ -24,6 +24,12 @@ import org.crsh.text.Color;
 import org.crsh.text.Decoration;
 import org.crsh.text.Style;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+
 public class AnsiBuilderTestCase extends TestCase {
 
   public void testReset() throws Exception {
@@ -76,4 +82,30 @@ public class AnsiBuilderTestCase extends TestCase {
     style = style.bold(null);
     assertEquals("\u001B[4;34;41m", style.toAnsiSequence());
   }
+
+  public void testWriteChars() throws Exception {
+    StringWriter writer = new StringWriter();
+    Style.style(Decoration.underline, Color.blue, Color.black).writeAnsiTo(writer);
+    Style.style().writeAnsiTo(writer);
+    Style.reset.writeAnsiTo(writer);
+    assertEquals("\u001B[4;34;40m\u001B[0m", writer.toString());
+  }
+
+  public void testWriteBytes() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Style.style(Decoration.underline, Color.blue, Color.black).writeAnsiTo(out);
+    Style.style().writeAnsiTo(out);
+    Style.reset.writeAnsiTo(out);
+    assertEquals("\u001B[4;34;40m\u001B[0m", out.toString("US-ASCII"));
+  }
+
+  public void testSerialization() throws Exception {
+    Style style = Style.style(Decoration.underline, Color.blue, Color.black);
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(buffer);
+    out.writeObject(style);
+    out.close();
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+    assertSame(style, in.readObject());
+  }
 }
@@ -19,7 +19,15 @@
 
 package org.crsh.text.ui;
 
+import org.crsh.io.ScreenContext;
+import org.crsh.text.Chunk;
 import org.crsh.text.Color;
+import org.crsh.text.LineReader;
+import org.crsh.text.RenderAppendable;
+import org.crsh.text.Renderer;
+
+import java.util.Arrays;
+import java.util.Iterator;
 
 import static org.crsh.text.ui.Element.label;
 import static org.crsh.text.ui.Element.row;
@@ -481,4 +489,176 @@ public class TableRendererTestCase extends AbstractRendererTestCase {
     assertRender(table, 9, 3, " ------- ", "|foo|bar|", " ------- ");
     assertRender(table, 9, 4, " ------- ", "|foo|bar|", "|   |   |", " ------- ");
   }
+
+  public void testStream() throws Exception {
+    TableElement table = new TableElement();
+    table.add(new RowElement(true).add(label("A"), label("B")));
+    CountingIterator rows = new CountingIterator(
+        row().add(label("a"), label("b")),
+        row().add(label("c"), label("d")),
+        row().add(label("e"), label("f")));
+    LineReader reader = table.renderer(rows, 1).reader(4);
+    assertEquals(1, rows.count);
+    assertRender(reader, 4,
+        "AB  ",
+        "--  ",
+        "ab  ",
+        "cd  ",
+        "ef  ");
+    assertEquals(3, rows.count);
+  }
+
+  public void testStreamLazily() throws Exception {
+    TableElement table = new TableElement();
+    CountingIterator rows = new CountingIterator(
+        row().add(label("a"), label("b")),
+        row().add(label("c"), label("d")),
+        row().add(label("e"), label("f")));
+    LineReader reader = table.renderer(rows, 1).reader(2);
+    assertEquals(1, rows.count);
+    assertTrue(reader.hasLine());
+    assertEquals(2, rows.count);
+    reader.renderLine(new RenderAppendable(new ScreenContext<Chunk>() {
+      public int getWidth() {
+        return 2;
+      }
+      public int getHeight() {
+        return 40;
+      }
+      public void provide(Chunk element) {
+      }
+      public void flush() {
+      }
+    }));
+    assertTrue(reader.hasLine());
+    assertEquals(3, rows.count);
+  }
+
+  public void testStreamWrap() throws Exception {
+    TableElement table = new TableElement();
+    CountingIterator rows = new CountingIterator(
+        row().add(label("a"), label("b")),
+        row().add(label("cd"), label("e")));
+    assertRender(table.renderer(rows, 1).reader(4),  4,
+        "ab  ",
+        "ce  ",
+        "d   ");
+  }
+
+  public void testStreamHidden() throws Exception {
+    TableElement table = new TableElement().overflow(Overflow.HIDDEN);
+    CountingIterator rows = new CountingIterator(
+        row().add(label("a"), label("b")),
+        row().add(label("cd"), label("e")));
+    assertRender(table.renderer(rows, 1).reader(4),  4,
+        "ab  ",
+        "ce  ");
+  }
+
+  public void testStreamHints() throws Exception {
+    TableElement table = new TableElement().withColumnLayout(Layout.fixed(3, 1));
+    CountingIterator rows = new CountingIterator(
+        row().add(label("a"), label("b")),
+        row().add(label("cd"), label("e")));
+    assertRender(table.renderer(rows, 0).reader(5),  5,
+        "a  b ",
+        "cd e ");
+  }
+
+  public void testStreamBorder() throws Exception {
+    TableElement table = new TableElement().border(BorderStyle.DASHED);
+    CountingIterator rows = new CountingIterator(
+        row().add(label("a"), label("b")),
+        row().add(label("c"), label("d")));
+    assertRender(table.renderer(rows, 2).reader(4),  4,
+        " -- ",
+        "|ab|",
+        "|cd|",
+        " -- ");
+  }
+
+  public void testStreamHeight() throws Exception {
+    TableElement table = new TableElement();
+    CountingIterator rows = new CountingIterator(
+        row().add(label("a"), label("b")),
+        row().add(label("c"), label("d")),
+        row().add(label("e"), label("f")));
+    assertRender(table.renderer(rows, 0).reader(2, 2),  2,
+        "ab",
+        "cd");
+    assertEquals(2, rows.count);
+  }
+
+  public void testStreamWider() throws Exception {
+    TableElement table = new TableElement();
+    CountingIterator rows = new CountingIterator(
+        row().add(label("a"), label("b")),
+        row().add(label("c"), label("d"), label("e")));
+    assertRender(table.renderer(rows, 1).reader(4),  4,
+        "ab  ",
+        "cd  ");
+  }
+
+  public void testStreamOnce() throws Exception {
+    TableElement table = new TableElement();
+    CountingIterator rows = new CountingIterator(
+        row().add(label("a"), label("b")),
+        row().add(label("c"), label("d")),
+        row().add(label("e"), label("f")));
+    Renderer renderer = table.renderer(rows, 1);
+    assertRender(renderer.reader(4),  4,
+        "ab  ",
+        "cd  ",
+        "ef  ");
+    try {
+      renderer.reader(4);
+      fail();
+    }
+    catch (IllegalStateException ignore) {
+    }
+  }
+
+  public void testStreamHeightAgain() throws Exception {
+    TableElement table = new TableElement();
+    CountingIterator rows = new CountingIterator(
+        row().add(label("a"), label("b")),
+        row().add(label("c"), label("d")),
+        row().add(label("e"), label("f")));
+    Renderer renderer = table.renderer(rows, 0);
+    assertRender(renderer.reader(2, 1),  2,
+        "ab");
+
+    // The rows read for a height are retained
+    assertRender(renderer.reader(2, 3),  2,
+        "ab",
+        "cd",
+        "ef");
+    assertEquals(3, rows.count);
+  }
+
+  private static class CountingIterator implements Iterator<RowElement> {
+
+    /** . */
+    private final Iterator<RowElement> rows;
+
+    /** . */
+    private int count;
+
+    private CountingIterator(RowElement... rows) {
+      this.rows = Arrays.asList(rows).iterator();
+    }
+
+    public boolean hasNext() {
+      return rows.hasNext();
+    }
+
+    public RowElement next() {
+      count++;
+      return rows.next();
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
 }
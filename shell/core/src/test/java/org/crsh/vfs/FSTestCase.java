@@ -29,7 +29,9 @@ import org.jboss.shrinkwrap.api.exporter.ZipExporter;
 import org.jboss.shrinkwrap.api.spec.JavaArchive;
 import org.jboss.shrinkwrap.api.spec.WebArchive;
 
+import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.net.URL;
 import java.util.Iterator;
 
@@ -140,4 +142,110 @@ public class FSTestCase extends TestCase {
     String file = IO.readAsUTF8(in);
     assertEquals("bar", file);
   }
+
+  public void testLastModified() throws Exception {
+    java.io.File dir = java.io.File.createTempFile("crash", "");
+    assertTrue(dir.delete());
+    assertTrue(dir.mkdir());
+    dir.deleteOnExit();
+    java.io.File script = new java.io.File(dir, "foo.groovy");
+    script.deleteOnExit();
+    java.io.FileOutputStream out = new java.io.FileOutputStream(script);
+    try {
+      out.write("bar".getBytes("UTF-8"));
+    }
+    finally {
+      out.close();
+    }
+    assertTrue(script.setLastModified(10000));
+
+    //
+    FS fs = new FS().mount(dir);
+    File foo = fs.get(Path.get("/")).child("foo.groovy", false);
+    assertNotNull(foo);
+    assertEquals(10000, foo.getLastModified());
+    assertEquals(10000, foo.getResource().getTimestamp());
+  }
+
+  public void testChecksum() throws Exception {
+    RAMDriver driver = new RAMDriver();
+    driver.add("/foo", "foo");
+    FS fs = new FS().mount(driver);
+    File root = fs.get(Path.get("/"));
+    long checksum = root.checksum();
+    assertEquals(checksum, root.checksum());
+    driver.add("/bar", "bar");
+    assertTrue(checksum != root.checksum());
+  }
+
+  public void testChecksumSameDirTimestamp() throws Exception {
+    java.io.File dir = java.io.File.createTempFile("crash", "");
+    assertTrue(dir.delete());
+    assertTrue(dir.mkdir());
+    dir.deleteOnExit();
+    assertTrue(dir.setLastModified(10000));
+    FS fs = new FS().mount(dir);
+    File root = fs.get(Path.get("/"));
+    long checksum = root.checksum();
+
+    // The entry is added within the resolution of the directory timestamp
+    java.io.File script = new java.io.File(dir, "foo.groovy");
+    script.deleteOnExit();
+    assertTrue(script.createNewFile());
+    assertTrue(dir.setLastModified(10000));
+    assertTrue(checksum != root.checksum());
+  }
+
+  public void testLazyResource() throws Exception {
+    RAMDriver driver = new RAMDriver();
+    driver.add("/foo", "foo");
+    FS fs = new FS().mount(driver);
+    File foo = fs.get(Path.get("/foo"));
+    Resource resource = foo.getResource();
+    assertEquals(-1, resource.getSize());
+    driver.add("/foo", "bar");
+    assertEquals("bar", IO.readAsUTF8(resource.open()));
+    assertEquals("bar", new String(resource.getContent(), "UTF-8"));
+  }
+
+  public void testUnreadableResource() throws Exception {
+    java.io.File file = java.io.File.createTempFile("crash", ".properties");
+    Resource resource = new Resource(file.toURI().toURL());
+    assertTrue(file.delete());
+    try {
+      resource.getContent();
+      fail();
+    }
+    catch (UndeclaredThrowableException e) {
+      assertTrue(e.getCause() instanceof FileNotFoundException);
+    }
+  }
+
+  public void testURLResource() throws Exception {
+    java.io.File file = java.io.File.createTempFile("crash", ".properties");
+    file.deleteOnExit();
+    java.io.FileOutputStream out = new java.io.FileOutputStream(file);
+    try {
+      out.write("foo=bar".getBytes("UTF-8"));
+    }
+    finally {
+      out.close();
+    }
+    assertTrue(file.setLastModified(10000));
+
+    //
+    Resource resource = new Resource(file.toURI().toURL());
+    assertEquals(10000, resource.getTimestamp());
+    assertEquals(7, resource.getSize());
+    assertEquals("foo=bar", IO.readAsUTF8(resource.open()));
+
+    //
+    assertTrue(file.delete());
+    try {
+      new Resource(file.toURI().toURL());
+      fail();
+    }
+    catch (FileNotFoundException ignore) {
+    }
+  }
 }
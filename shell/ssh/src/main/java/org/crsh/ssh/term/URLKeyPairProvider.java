@@ -23,7 +23,6 @@ import org.apache.sshd.common.util.SecurityUtils;
 import org.bouncycastle.openssl.PEMReader;
 import org.crsh.vfs.Resource;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStreamReader;
 import java.security.KeyPair;
 import java.util.ArrayList;
@@ -51,7 +50,7 @@ public class URLKeyPairProvider extends AbstractKeyPairProvider {
     List<KeyPair> keys = new ArrayList<KeyPair>();
     if (key != null) {
       try {
-        PEMReader r = new PEMReader(new InputStreamReader(new ByteArrayInputStream(key.getContent())));
+        PEMReader r = new PEMReader(new InputStreamReader(key.open()));
         try {
           Object o = r.readObject();
           if (o instanceof KeyPair) {
@@ -27,9 +27,10 @@ import net.wimpi.telnetd.shell.ShellManager;
 import net.wimpi.telnetd.util.StringUtil;
 import org.crsh.plugin.PluginContext;
 import org.crsh.term.TermLifeCycle;
+import org.crsh.util.Safe;
 import org.crsh.vfs.Resource;
 
-import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -81,7 +82,13 @@ public class TelnetLifeCycle extends TermLifeCycle {
   @Override
   protected synchronized void doInit() throws Exception {
     Properties props = new Properties();
-    props.load(new ByteArrayInputStream(config.getContent()));
+    InputStream in = config.open();
+    try {
+      props.load(in);
+    }
+    finally {
+      Safe.close(in);
+    }
 
     //
     if (port != null) {